@@ -0,0 +1,70 @@
+package edu.immutables.bst;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Throughput of the B+tree against the binary {@link Branch} tree holding the same even elements.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BPlusTreeBenchmark {
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"bplus", "branch"})
+    String implementation;
+
+    private Tree<Integer> tree;
+
+    @Setup
+    public void setUp() {
+        final List<Integer> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) elements.add(2 * i);
+        Collections.shuffle(elements, new Random(42));
+        tree = implementation.equals("bplus") ? BPlusTree.of(elements) : Tree.of(elements);
+    }
+
+    private int randomElement() {
+        return ThreadLocalRandom.current().nextInt(2 * size);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return tree.contains(randomElement());
+    }
+
+    @Benchmark
+    public Tree<Integer> add() {
+        return tree.add(randomElement() | 1);
+    }
+
+    @Benchmark
+    public Tree<Integer> remove() {
+        return tree.remove(randomElement() & ~1);
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        for (final Integer element : tree) sum += element;
+        return sum;
+    }
+}
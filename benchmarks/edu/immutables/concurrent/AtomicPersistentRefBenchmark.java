@@ -0,0 +1,123 @@
+package edu.immutables.concurrent;
+
+import edu.immutables.bst.BPlusTree;
+import edu.immutables.bst.Tree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Throughput of a shared sorted set under concurrent updates and reads: a tree
+ * behind an {@link AtomicPersistentRef}, the same with combined adds, and a
+ * {@link TreeSet} guarded by a {@link ReentrantReadWriteLock}.
+ * <p>
+ * The snapshots are {@link BPlusTree}s, the binary tree rebuilds subtrees
+ * through union on removal and would dominate the measurements.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AtomicPersistentRefBenchmark {
+    private static final int KEYS = 100_000;
+
+    @Param({"atomic", "combining", "locked"})
+    String implementation;
+
+    private AtomicPersistentRef<Tree<Integer>> ref;
+    private CombiningRef<Tree<Integer>, Integer> combining;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private TreeSet<Integer> set;
+
+    @Setup
+    public void setUp() {
+        final List<Integer> elements = new ArrayList<>(KEYS / 2);
+        for (int i = 0; i < KEYS; i += 2) elements.add(i);
+        ref = new AtomicPersistentRef<>(BPlusTree.of(elements));
+        combining = AtomicPersistentRef.combining(BPlusTree.of(elements));
+        set = new TreeSet<>(elements);
+    }
+
+    private static int randomKey() {
+        return ThreadLocalRandom.current().nextInt(KEYS);
+    }
+
+    /**
+     * Add or remove a random key with even odds, so the set stays about half full.
+     */
+    private void write() {
+        final int key = randomKey();
+        final boolean add = ThreadLocalRandom.current().nextBoolean();
+        switch (implementation) {
+            case "atomic":
+                ref.update(tree -> add ? tree.add(key) : tree.remove(key));
+                break;
+            case "combining":
+                if (add) combining.add(key);
+                else combining.update(tree -> tree.remove(key));
+                break;
+            default:
+                lock.writeLock().lock();
+                try {
+                    if (add) set.add(key);
+                    else set.remove(key);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+        }
+    }
+
+    private boolean contains(final int key) {
+        switch (implementation) {
+            case "atomic":
+                return ref.get().contains(key);
+            case "combining":
+                return combining.get().contains(key);
+            default:
+                lock.readLock().lock();
+                try {
+                    return set.contains(key);
+                } finally {
+                    lock.readLock().unlock();
+                }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void writes() {
+        write();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void writer() {
+        write();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public boolean reader() {
+        return contains(randomKey());
+    }
+}
@@ -0,0 +1,73 @@
+package edu.immutables.heap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Throughput of the persistent heap against a {@link PriorityQueue} copied
+ * on every update, which is what keeping old versions of it takes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeapBenchmark {
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"heap", "queue"})
+    String implementation;
+
+    private Heap<Integer> heap;
+    private PriorityQueue<Integer> queue;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        final List<Integer> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) elements.add(random.nextInt());
+        heap = Heap.of(elements);
+        queue = new PriorityQueue<>(elements);
+    }
+
+    @Benchmark
+    public Object insert() {
+        final Integer element = ThreadLocalRandom.current().nextInt();
+        if (implementation.equals("heap")) return heap.insert(element);
+        final PriorityQueue<Integer> copy = new PriorityQueue<>(queue);
+        copy.add(element);
+        return copy;
+    }
+
+    /**
+     * Remove the minimum from the same version every time, as a persistent
+     * structure allows.
+     */
+    @Benchmark
+    public Object deleteMin() {
+        if (implementation.equals("heap")) return heap.deleteMin();
+        final PriorityQueue<Integer> copy = new PriorityQueue<>(queue);
+        copy.poll();
+        return copy;
+    }
+
+    @Benchmark
+    public Integer findMin() {
+        return implementation.equals("heap") ? heap.findMin() : queue.peek();
+    }
+}
@@ -0,0 +1,102 @@
+package edu.immutables.map;
+
+import edu.immutables.bst.Tree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Throughput of the hash trie map against the sorted {@link Tree} holding the
+ * same keys and a {@link HashMap}, copied on every update to stay immutable.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImmutableMapBenchmark {
+    @Param({"1000", "100000"})
+    int size;
+
+    @Param({"trie", "tree", "hashmap"})
+    String implementation;
+
+    private ImmutableMap<Integer, Integer> map;
+    private Tree<Integer> tree;
+    private HashMap<Integer, Integer> hashMap;
+
+    @Setup
+    public void setUp() {
+        final List<Integer> keys = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) keys.add(2 * i);
+        Collections.shuffle(keys, new Random(42));
+        map = ImmutableMap.empty();
+        for (final Integer key : keys) map = map.put(key, key);
+        tree = Tree.of(keys);
+        hashMap = new HashMap<>();
+        for (final Integer key : keys) hashMap.put(key, key);
+    }
+
+    private int randomKey() {
+        return ThreadLocalRandom.current().nextInt(2 * size);
+    }
+
+    @Benchmark
+    public boolean get() {
+        final Integer key = randomKey();
+        switch (implementation) {
+            case "trie":
+                return map.get(key) != null;
+            case "tree":
+                return tree.contains(key);
+            default:
+                return hashMap.get(key) != null;
+        }
+    }
+
+    @Benchmark
+    public Object put() {
+        final Integer key = randomKey() | 1;
+        switch (implementation) {
+            case "trie":
+                return map.put(key, key);
+            case "tree":
+                return tree.add(key);
+            default:
+                final HashMap<Integer, Integer> copy = new HashMap<>(hashMap);
+                copy.put(key, key);
+                return copy;
+        }
+    }
+
+    @Benchmark
+    public long iterate() {
+        long sum = 0;
+        switch (implementation) {
+            case "trie":
+                for (final Map.Entry<Integer, Integer> entry : map) sum += entry.getValue();
+                break;
+            case "tree":
+                for (final Integer key : tree) sum += key;
+                break;
+            default:
+                for (final Integer value : hashMap.values()) sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,118 @@
+package edu.immutables.bitmap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Container holding its values in a sorted {@code char[]}, used up to
+ * {@link #MAX_ARRAY} values.
+ */
+final class ArrayContainer extends Container {
+    static final ArrayContainer EMPTY = new ArrayContainer(new char[0]);
+
+    final char[] values;
+
+    ArrayContainer(final char[] values) {
+        this.values = values;
+    }
+
+    @Override
+    int cardinality() {
+        return values.length;
+    }
+
+    @Override
+    boolean contains(final char value) {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+    @Override
+    Container add(final char value) {
+        final int index = Arrays.binarySearch(values, value);
+        if (index >= 0) return this;
+        if (values.length == MAX_ARRAY) return toBitmap().add(value);
+        final int insertion = -index - 1;
+        final char[] copy = new char[values.length + 1];
+        System.arraycopy(values, 0, copy, 0, insertion);
+        copy[insertion] = value;
+        System.arraycopy(values, insertion, copy, insertion + 1, values.length - insertion);
+        return new ArrayContainer(copy);
+    }
+
+    @Override
+    Container remove(final char value) {
+        final int index = Arrays.binarySearch(values, value);
+        if (index < 0) return this;
+        final char[] copy = new char[values.length - 1];
+        System.arraycopy(values, 0, copy, 0, index);
+        System.arraycopy(values, index + 1, copy, index, copy.length - index);
+        return new ArrayContainer(copy);
+    }
+
+    static Container or(final ArrayContainer a, final ArrayContainer b) {
+        if (a.values.length + b.values.length > MAX_ARRAY) return a.toBitmap().or(b);
+        final char[] merged = new char[a.values.length + b.values.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.values.length && j < b.values.length) {
+            final char x = a.values[i], y = b.values[j];
+            if (x <= y) ++i;
+            if (y <= x) ++j;
+            merged[k++] = x <= y ? x : y;
+        }
+        while (i < a.values.length) merged[k++] = a.values[i++];
+        while (j < b.values.length) merged[k++] = b.values[j++];
+        return new ArrayContainer(Arrays.copyOf(merged, k));
+    }
+
+    /**
+     * @param keep true to keep the values contained in the other container, false to keep the others
+     */
+    Container filter(final Container other, final boolean keep) {
+        final char[] kept = new char[values.length];
+        int k = 0;
+        for (final char value : values) {
+            if (other.contains(value) == keep) kept[k++] = value;
+        }
+        return k == values.length ? this : new ArrayContainer(Arrays.copyOf(kept, k));
+    }
+
+    BitmapContainer toBitmap() {
+        final long[] words = new long[BitmapContainer.WORDS];
+        for (final char value : values) words[value >>> 6] |= 1L << value;
+        return new BitmapContainer(words, values.length);
+    }
+
+    @Override
+    void foreach(final int high, final IntConsumer consumer) {
+        for (final char value : values) consumer.accept(high | value);
+    }
+
+    @Override
+    PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < values.length;
+            }
+
+            @Override
+            public int nextInt() {
+                if (index == values.length) throw new NoSuchElementException();
+                return values[index++];
+            }
+        };
+    }
+
+    @Override
+    Container runOptimize() {
+        int runs = 0;
+        for (int i = 0; i < values.length; ++i) {
+            if (i == 0 || values[i] != values[i - 1] + 1) ++runs;
+        }
+        return RunContainer.smaller(runs, values.length) ? RunContainer.of(iterator(), runs, values.length) : this;
+    }
+}
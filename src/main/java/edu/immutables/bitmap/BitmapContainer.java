@@ -0,0 +1,181 @@
+package edu.immutables.bitmap;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Container holding one bit per possible value in 1024 words, used above
+ * {@link #MAX_ARRAY} values. Set operations combine whole words at a time.
+ */
+final class BitmapContainer extends Container {
+    static final int WORDS = 1 << 16 >>> 6;
+
+    final long[] words;
+    private final int cardinality;
+
+    BitmapContainer(final long[] words, final int cardinality) {
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Wrap words freshly computed by a set operation, switching back to an
+     * array container if the values fit in one.
+     */
+    static Container of(final long[] words, final int cardinality) {
+        if (cardinality > MAX_ARRAY) return new BitmapContainer(words, cardinality);
+        final char[] values = new char[cardinality];
+        int k = 0;
+        for (int i = 0; i < WORDS; ++i) {
+            for (long word = words[i]; word != 0; word &= word - 1) {
+                values[k++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+        return new ArrayContainer(values);
+    }
+
+    /**
+     * Set the bits from {@code from} inclusive to {@code to} exclusive.
+     */
+    static void setRange(final long[] words, final int from, final int to) {
+        final int first = from >>> 6;
+        final int last = (to - 1) >>> 6;
+        final long firstMask = -1L << from;
+        final long lastMask = -1L >>> -to;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int i = first + 1; i < last; ++i) words[i] = -1L;
+        words[last] |= lastMask;
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    boolean contains(final char value) {
+        return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    Container add(final char value) {
+        if (contains(value)) return this;
+        final long[] copy = words.clone();
+        copy[value >>> 6] |= 1L << value;
+        return new BitmapContainer(copy, cardinality + 1);
+    }
+
+    @Override
+    Container remove(final char value) {
+        if (!contains(value)) return this;
+        final long[] copy = words.clone();
+        copy[value >>> 6] &= ~(1L << value);
+        return of(copy, cardinality - 1);
+    }
+
+    Container or(final Container other) {
+        final long[] result = words.clone();
+        int count;
+        if (other instanceof BitmapContainer) {
+            final long[] otherWords = ((BitmapContainer) other).words;
+            count = 0;
+            for (int i = 0; i < WORDS; ++i) {
+                result[i] |= otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+        } else {
+            count = cardinality;
+            for (final char value : ((ArrayContainer) other).values) {
+                final long bit = 1L << value;
+                if ((result[value >>> 6] & bit) == 0) {
+                    result[value >>> 6] |= bit;
+                    ++count;
+                }
+            }
+        }
+        return count == cardinality ? this : new BitmapContainer(result, count);
+    }
+
+    Container and(final BitmapContainer other) {
+        final long[] result = new long[WORDS];
+        int count = 0;
+        for (int i = 0; i < WORDS; ++i) {
+            result[i] = words[i] & other.words[i];
+            count += Long.bitCount(result[i]);
+        }
+        return count == cardinality ? this : of(result, count);
+    }
+
+    Container andNot(final Container other) {
+        final long[] result = words.clone();
+        int count;
+        if (other instanceof BitmapContainer) {
+            final long[] otherWords = ((BitmapContainer) other).words;
+            count = 0;
+            for (int i = 0; i < WORDS; ++i) {
+                result[i] &= ~otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+        } else {
+            count = cardinality;
+            for (final char value : ((ArrayContainer) other).values) {
+                final long bit = 1L << value;
+                if ((result[value >>> 6] & bit) != 0) {
+                    result[value >>> 6] &= ~bit;
+                    --count;
+                }
+            }
+        }
+        return count == cardinality ? this : of(result, count);
+    }
+
+    @Override
+    void foreach(final int high, final IntConsumer consumer) {
+        for (int i = 0; i < WORDS; ++i) {
+            for (long word = words[i]; word != 0; word &= word - 1) {
+                consumer.accept(high | (i << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    @Override
+    PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index;
+            private long word = words[0];
+
+            @Override
+            public boolean hasNext() {
+                while (word == 0) {
+                    if (++index == WORDS) return false;
+                    word = words[index];
+                }
+                return true;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) throw new NoSuchElementException();
+                final int value = (index << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return value;
+            }
+        };
+    }
+
+    @Override
+    Container runOptimize() {
+        int runs = 0;
+        long previous = 0;
+        for (final long word : words) {
+            runs += Long.bitCount(word & ~(word << 1 | previous >>> 63));
+            previous = word;
+        }
+        return RunContainer.smaller(runs, cardinality) ? RunContainer.of(iterator(), runs, cardinality) : this;
+    }
+}
@@ -0,0 +1,90 @@
+package edu.immutables.bitmap;
+
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable set of the low 16 bits of the values sharing the same high
+ * 16 bits.
+ * <p>
+ * Updates return a modified copy, containers are never changed once
+ * built so bitmaps can share them freely.
+ * </p>
+ */
+abstract class Container {
+    /**
+     * Maximum cardinality of an array container, above it a bitmap container is smaller.
+     */
+    static final int MAX_ARRAY = 4096;
+
+    abstract int cardinality();
+
+    abstract boolean contains(char value);
+
+    abstract Container add(char value);
+
+    /**
+     * @return the container without the value, it may be empty
+     */
+    abstract Container remove(char value);
+
+    /**
+     * Apply an action over the values in ascending order.
+     *
+     * @param high high 16 bits to combine the values with
+     * @param consumer action to apply
+     */
+    abstract void foreach(int high, IntConsumer consumer);
+
+    /**
+     * @return iterator over the values in ascending order, as ints from 0 to 65535
+     */
+    abstract PrimitiveIterator.OfInt iterator();
+
+    /**
+     * @return the smallest of the array, bitmap and run encodings of the values
+     */
+    abstract Container runOptimize();
+
+    /**
+     * @return an array or bitmap container holding the same values
+     */
+    Container expand() {
+        return this;
+    }
+
+    static Container or(final Container a, final Container b) {
+        if (a == b) return a;
+        if (a instanceof RunContainer && b instanceof RunContainer) {
+            return RunContainer.or((RunContainer) a, (RunContainer) b);
+        }
+        final Container x = a.expand();
+        final Container y = b.expand();
+        if (x instanceof BitmapContainer) return ((BitmapContainer) x).or(y);
+        if (y instanceof BitmapContainer) return ((BitmapContainer) y).or(x);
+        return ArrayContainer.or((ArrayContainer) x, (ArrayContainer) y);
+    }
+
+    static Container and(final Container a, final Container b) {
+        if (a == b) return a;
+        if (a instanceof RunContainer && b instanceof RunContainer) {
+            return RunContainer.and((RunContainer) a, (RunContainer) b);
+        }
+        final Container x = a.expand();
+        final Container y = b.expand();
+        if (x instanceof ArrayContainer) return ((ArrayContainer) x).filter(y, true);
+        if (y instanceof ArrayContainer) return ((ArrayContainer) y).filter(x, true);
+        return ((BitmapContainer) x).and((BitmapContainer) y);
+    }
+
+    static Container andNot(final Container a, final Container b) {
+        if (a == b) return ArrayContainer.EMPTY;
+        if (a instanceof RunContainer && b instanceof RunContainer) {
+            return RunContainer.andNot((RunContainer) a, (RunContainer) b);
+        }
+        final Container x = a.expand();
+        final Container y = b.expand();
+        if (x instanceof ArrayContainer) return ((ArrayContainer) x).filter(y, false);
+        return ((BitmapContainer) x).andNot(y);
+    }
+}
@@ -0,0 +1,426 @@
+package edu.immutables.bitmap;
+
+import edu.immutables.bst.Tree;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Persistent compressed set of {@code int} values.
+ * <p>
+ * Values are split on their high 16 bits into chunks of up to 65536
+ * values, each held by a container picked for its density: a sorted
+ * {@code char[]} for sparse chunks, a 1024 word bitmap for dense ones, or
+ * runs of consecutive values after {@link #runOptimize()}. A dense set
+ * costs about one bit per value, a sparse one two bytes per value.
+ * </p>
+ * <p>
+ * Containers are immutable. An update copies the touched container and
+ * the container index, set operations reuse every container found in
+ * only one operand and combine the others a word at a time.
+ * </p>
+ * <p>
+ * Values are ordered as signed ints, like {@code Tree<Integer>}.
+ * </p>
+ */
+public final class RoaringBitmap {
+    private static final RoaringBitmap EMPTY = new RoaringBitmap(new char[0], new Container[0], 0);
+
+    /**
+     * High 16 bits of the values of every container, with the sign bit
+     * flipped so that unsigned order of the keys is signed order of the values.
+     */
+    private final char[] keys;
+    private final Container[] containers;
+    private final int size;
+
+    private RoaringBitmap(final char[] keys, final Container[] containers, final int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    private static char high(final int value) {
+        return (char) ((value >>> 16) ^ 0x8000);
+    }
+
+    private static int highBits(final char key) {
+        return (key ^ 0x8000) << 16;
+    }
+
+    /**
+     * Add a value to the set.
+     *
+     * @param value value to add
+     * @return a new set with the value added
+     */
+    public RoaringBitmap add(final int value) {
+        final int index = Arrays.binarySearch(keys, high(value));
+        if (index < 0) {
+            final int insertion = -index - 1;
+            final char[] newKeys = new char[keys.length + 1];
+            final Container[] newContainers = new Container[containers.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertion);
+            System.arraycopy(containers, 0, newContainers, 0, insertion);
+            newKeys[insertion] = high(value);
+            newContainers[insertion] = new ArrayContainer(new char[]{(char) value});
+            System.arraycopy(keys, insertion, newKeys, insertion + 1, keys.length - insertion);
+            System.arraycopy(containers, insertion, newContainers, insertion + 1, containers.length - insertion);
+            return new RoaringBitmap(newKeys, newContainers, size + 1);
+        }
+        final Container updated = containers[index].add((char) value);
+        if (updated == containers[index]) return this;
+        final Container[] newContainers = containers.clone();
+        newContainers[index] = updated;
+        return new RoaringBitmap(keys, newContainers, size + 1);
+    }
+
+    /**
+     * Remove a value from the set.
+     *
+     * @param value value to remove
+     * @return a new set with the value removed
+     */
+    public RoaringBitmap remove(final int value) {
+        final int index = Arrays.binarySearch(keys, high(value));
+        if (index < 0) return this;
+        final Container updated = containers[index].remove((char) value);
+        if (updated == containers[index]) return this;
+        if (size == 1) return EMPTY;
+        if (updated.cardinality() > 0) {
+            final Container[] newContainers = containers.clone();
+            newContainers[index] = updated;
+            return new RoaringBitmap(keys, newContainers, size - 1);
+        }
+        final char[] newKeys = new char[keys.length - 1];
+        final Container[] newContainers = new Container[containers.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, index);
+        System.arraycopy(containers, 0, newContainers, 0, index);
+        System.arraycopy(keys, index + 1, newKeys, index, newKeys.length - index);
+        System.arraycopy(containers, index + 1, newContainers, index, newContainers.length - index);
+        return new RoaringBitmap(newKeys, newContainers, size - 1);
+    }
+
+    /**
+     * Test if the set contains a value.
+     *
+     * @param value target value
+     * @return true if the set contains the value, false otherwise
+     */
+    public boolean contains(final int value) {
+        final int index = Arrays.binarySearch(keys, high(value));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * @return the container holding the chunk of the value, null if there is none
+     */
+    Container container(final int value) {
+        final int index = Arrays.binarySearch(keys, high(value));
+        return index >= 0 ? containers[index] : null;
+    }
+
+    /**
+     * Union two sets.
+     *
+     * @param other set to union with
+     * @return a new set of the values in either set
+     */
+    public RoaringBitmap or(final RoaringBitmap other) {
+        if (other.size == 0 || other == this) return this;
+        if (size == 0) return other;
+        final char[] newKeys = new char[keys.length + other.keys.length];
+        final Container[] newContainers = new Container[newKeys.length];
+        int i = 0, j = 0, k = 0, newSize = 0;
+        while (i < keys.length || j < other.keys.length) {
+            final int cmp = i == keys.length ? 1 : j == other.keys.length ? -1 : Character.compare(keys[i], other.keys[j]);
+            if (cmp < 0) {
+                newKeys[k] = keys[i];
+                newContainers[k] = containers[i++];
+            } else if (cmp > 0) {
+                newKeys[k] = other.keys[j];
+                newContainers[k] = other.containers[j++];
+            } else {
+                newKeys[k] = keys[i];
+                newContainers[k] = Container.or(containers[i++], other.containers[j++]);
+            }
+            newSize += newContainers[k++].cardinality();
+        }
+        return newSize == size ? this : new RoaringBitmap(Arrays.copyOf(newKeys, k), Arrays.copyOf(newContainers, k), newSize);
+    }
+
+    /**
+     * Intersect two sets.
+     *
+     * @param other set to intersect with
+     * @return a new set of the values in both sets
+     */
+    public RoaringBitmap and(final RoaringBitmap other) {
+        if (other == this) return this;
+        final int length = Math.min(keys.length, other.keys.length);
+        final char[] newKeys = new char[length];
+        final Container[] newContainers = new Container[length];
+        int i = 0, j = 0, k = 0, newSize = 0;
+        while (i < keys.length && j < other.keys.length) {
+            final int cmp = Character.compare(keys[i], other.keys[j]);
+            if (cmp < 0) {
+                ++i;
+            } else if (cmp > 0) {
+                ++j;
+            } else {
+                final Container container = Container.and(containers[i], other.containers[j]);
+                if (container.cardinality() > 0) {
+                    newKeys[k] = keys[i];
+                    newContainers[k++] = container;
+                    newSize += container.cardinality();
+                }
+                ++i;
+                ++j;
+            }
+        }
+        return build(newKeys, newContainers, k, newSize);
+    }
+
+    /**
+     * Subtract a set from this one.
+     *
+     * @param other set of the values to remove
+     * @return a new set of the values in this set and not in the other one
+     */
+    public RoaringBitmap andNot(final RoaringBitmap other) {
+        if (other == this) return EMPTY;
+        if (other.size == 0) return this;
+        final char[] newKeys = new char[keys.length];
+        final Container[] newContainers = new Container[keys.length];
+        int i = 0, j = 0, k = 0, newSize = 0;
+        while (i < keys.length) {
+            final int cmp = j == other.keys.length ? -1 : Character.compare(keys[i], other.keys[j]);
+            if (cmp > 0) {
+                ++j;
+                continue;
+            }
+            final Container container = cmp < 0 ? containers[i] : Container.andNot(containers[i], other.containers[j++]);
+            if (container.cardinality() > 0) {
+                newKeys[k] = keys[i];
+                newContainers[k++] = container;
+                newSize += container.cardinality();
+            }
+            ++i;
+        }
+        return newSize == size ? this : build(newKeys, newContainers, k, newSize);
+    }
+
+    private static RoaringBitmap build(final char[] keys, final Container[] containers, final int count, final int size) {
+        if (size == 0) return EMPTY;
+        return new RoaringBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count), size);
+    }
+
+    /**
+     * Convert every container to run encoding where that is smaller,
+     * to compact sets made of long ranges of consecutive values.
+     *
+     * @return a new set of the same values
+     */
+    public RoaringBitmap runOptimize() {
+        Container[] optimized = null;
+        for (int i = 0; i < containers.length; ++i) {
+            final Container container = containers[i].runOptimize();
+            if (container == containers[i]) continue;
+            if (optimized == null) optimized = containers.clone();
+            optimized[i] = container;
+        }
+        return optimized == null ? this : new RoaringBitmap(keys, optimized, size);
+    }
+
+    /**
+     * Apply an action over the values in ascending order.
+     *
+     * @param consumer action to apply
+     */
+    public void foreach(final IntConsumer consumer) {
+        for (int i = 0; i < keys.length; ++i) containers[i].foreach(highBits(keys[i]), consumer);
+    }
+
+    /**
+     * @return the number of values in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the set is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return iterator over the values in ascending order
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new Itr();
+    }
+
+    /**
+     * @return sequential stream of the values in ascending order
+     */
+    public IntStream stream() {
+        return StreamSupport.intStream(Spliterators.spliterator(iterator(), size,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+                        | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * @return array of the values in ascending order
+     */
+    public int[] toArray() {
+        final int[] result = new int[size];
+        final int[] index = {0};
+        foreach(value -> result[index[0]++] = value);
+        return result;
+    }
+
+    /**
+     * @return a tree of the values
+     */
+    public Tree<Integer> toTree() {
+        return Tree.ofSorted(stream().boxed());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final RoaringBitmap other = (RoaringBitmap) o;
+        if (size != other.size || !Arrays.equals(keys, other.keys)) return false;
+        final PrimitiveIterator.OfInt values = iterator();
+        final PrimitiveIterator.OfInt otherValues = other.iterator();
+        while (values.hasNext()) {
+            if (values.nextInt() != otherValues.nextInt()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        final int[] hash = {0};
+        foreach(value -> hash[0] += value);
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        foreach(value -> builder.append(builder.length() == 0 ? "" : " ").append(value));
+        return builder.toString();
+    }
+
+    /**
+     * Return an empty set.
+     *
+     * @return an empty set
+     */
+    public static RoaringBitmap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Factory method to build a set from multiple values.
+     * <p>
+     * The given array is not modified.
+     * </p>
+     *
+     * @param values values to build from
+     * @return set of the given values
+     */
+    public static RoaringBitmap of(final int... values) {
+        final int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final char[] keys = new char[sorted.length];
+        final Container[] containers = new Container[sorted.length];
+        int count = 0, size = 0;
+        for (int start = 0; start < sorted.length; ) {
+            final char key = high(sorted[start]);
+            int end = start;
+            while (end < sorted.length && high(sorted[end]) == key) ++end;
+            final Container container = chunk(sorted, start, end);
+            keys[count] = key;
+            containers[count++] = container;
+            size += container.cardinality();
+            start = end;
+        }
+        return build(keys, containers, count, size);
+    }
+
+    /**
+     * Build the container of sorted values sharing the same high bits, skipping duplicates.
+     */
+    private static Container chunk(final int[] sorted, final int start, final int end) {
+        if (end - start > Container.MAX_ARRAY) {
+            final long[] words = new long[BitmapContainer.WORDS];
+            int cardinality = 0;
+            for (int i = start; i < end; ++i) {
+                final long bit = 1L << sorted[i];
+                final int word = (char) sorted[i] >>> 6;
+                if ((words[word] & bit) == 0) ++cardinality;
+                words[word] |= bit;
+            }
+            return BitmapContainer.of(words, cardinality);
+        }
+        final char[] values = new char[end - start];
+        int k = 0;
+        for (int i = start; i < end; ++i) {
+            if (k == 0 || values[k - 1] != (char) sorted[i]) values[k++] = (char) sorted[i];
+        }
+        return new ArrayContainer(k == values.length ? values : Arrays.copyOf(values, k));
+    }
+
+    /**
+     * Factory method to build a set from a stream of values.
+     *
+     * @param values values to build from
+     * @return set of the given values
+     */
+    public static RoaringBitmap of(final IntStream values) {
+        return of(values.toArray());
+    }
+
+    /**
+     * Factory method to build a set from boxed values, such as the elements of a {@link Tree}.
+     *
+     * @param values values to build from
+     * @return set of the given values
+     */
+    public static RoaringBitmap of(final Iterable<Integer> values) {
+        return of(StreamSupport.stream(values.spliterator(), false).mapToInt(Integer::intValue));
+    }
+
+    private final class Itr implements PrimitiveIterator.OfInt {
+        private int index = -1;
+        private int high;
+        private PrimitiveIterator.OfInt values = ArrayContainer.EMPTY.iterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!values.hasNext()) {
+                if (++index >= keys.length) return false;
+                high = highBits(keys[index]);
+                values = containers[index].iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return high | values.nextInt();
+        }
+    }
+}
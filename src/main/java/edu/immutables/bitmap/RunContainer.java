@@ -0,0 +1,288 @@
+package edu.immutables.bitmap;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Container holding its values as runs of consecutive values, each run
+ * stored as its start and its length minus one. Built by
+ * {@link Container#runOptimize()}.
+ * <p>
+ * Adds and removes edit the runs: extend or shrink a run, merge two runs
+ * or split one. Unions, intersections and differences of two run
+ * containers merge their runs. The results stay run containers while
+ * that encoding is the smallest and are expanded to an array or bitmap
+ * container once it is not, so a container never grows past what
+ * {@link Container#runOptimize()} would pick.
+ * </p>
+ */
+final class RunContainer extends Container {
+    final char[] runs;
+    private final int cardinality;
+
+    private RunContainer(final char[] runs, final int cardinality) {
+        this.runs = runs;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @return true if the run encoding is smaller than the array or bitmap encoding of the values
+     */
+    static boolean smaller(final int runs, final int cardinality) {
+        final int current = cardinality <= MAX_ARRAY ? 2 * cardinality : 8 * BitmapContainer.WORDS;
+        return 4 * runs + 2 < current;
+    }
+
+    /**
+     * @return the runs as a run container if that is the smallest encoding, expanded otherwise
+     */
+    private static Container of(final char[] runs, final int cardinality) {
+        if (cardinality == 0) return ArrayContainer.EMPTY;
+        final RunContainer container = new RunContainer(runs, cardinality);
+        return smaller(runs.length / 2, cardinality) ? container : container.expand();
+    }
+
+    /**
+     * @param bounds inclusive start and end of each run, ascending and neither overlapping nor adjacent
+     * @param length number of bounds used
+     */
+    private static Container of(final int[] bounds, final int length) {
+        final char[] runs = new char[length];
+        int cardinality = 0;
+        for (int i = 0; i < length; i += 2) {
+            runs[i] = (char) bounds[i];
+            runs[i + 1] = (char) (bounds[i + 1] - bounds[i]);
+            cardinality += bounds[i + 1] - bounds[i] + 1;
+        }
+        return of(runs, cardinality);
+    }
+
+    static RunContainer of(final PrimitiveIterator.OfInt values, final int runCount, final int cardinality) {
+        final char[] runs = new char[2 * runCount];
+        int run = -1;
+        int last = -2;
+        while (values.hasNext()) {
+            final int value = values.nextInt();
+            if (value != last + 1) {
+                runs[2 * ++run] = (char) value;
+            } else {
+                ++runs[2 * run + 1];
+            }
+            last = value;
+        }
+        return new RunContainer(runs, cardinality);
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return index of the last run starting at or before the value, -1 if there is none
+     */
+    private int floorRun(final char value) {
+        int lo = 0;
+        int hi = runs.length / 2 - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (runs[2 * mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+
+    private int end(final int run) {
+        return runs[2 * run] + runs[2 * run + 1];
+    }
+
+    @Override
+    boolean contains(final char value) {
+        final int run = floorRun(value);
+        return run >= 0 && value <= end(run);
+    }
+
+    @Override
+    Container add(final char value) {
+        final int run = floorRun(value);
+        if (run >= 0 && value <= end(run)) return this;
+        final int i = 2 * run;
+        final boolean extendsPrevious = run >= 0 && value == end(run) + 1;
+        final boolean extendsNext = i + 2 < runs.length && value + 1 == runs[i + 2];
+        final char[] copy;
+        if (extendsPrevious && extendsNext) {
+            copy = new char[runs.length - 2];
+            System.arraycopy(runs, 0, copy, 0, i + 2);
+            copy[i + 1] = (char) (end(run + 1) - runs[i]);
+            System.arraycopy(runs, i + 4, copy, i + 2, runs.length - i - 4);
+        } else if (extendsPrevious) {
+            copy = runs.clone();
+            ++copy[i + 1];
+        } else if (extendsNext) {
+            copy = runs.clone();
+            --copy[i + 2];
+            ++copy[i + 3];
+        } else {
+            copy = new char[runs.length + 2];
+            System.arraycopy(runs, 0, copy, 0, i + 2);
+            copy[i + 2] = value;
+            System.arraycopy(runs, i + 2, copy, i + 4, runs.length - i - 2);
+        }
+        return of(copy, cardinality + 1);
+    }
+
+    @Override
+    Container remove(final char value) {
+        final int run = floorRun(value);
+        if (run < 0 || value > end(run)) return this;
+        final int i = 2 * run;
+        final int start = runs[i];
+        final int end = end(run);
+        final char[] copy;
+        if (start == end) {
+            copy = new char[runs.length - 2];
+            System.arraycopy(runs, 0, copy, 0, i);
+            System.arraycopy(runs, i + 2, copy, i, runs.length - i - 2);
+        } else if (value == start) {
+            copy = runs.clone();
+            ++copy[i];
+            --copy[i + 1];
+        } else if (value == end) {
+            copy = runs.clone();
+            --copy[i + 1];
+        } else {
+            copy = new char[runs.length + 2];
+            System.arraycopy(runs, 0, copy, 0, i);
+            copy[i] = (char) start;
+            copy[i + 1] = (char) (value - 1 - start);
+            copy[i + 2] = (char) (value + 1);
+            copy[i + 3] = (char) (end - value - 1);
+            System.arraycopy(runs, i + 2, copy, i + 4, runs.length - i - 2);
+        }
+        return of(copy, cardinality - 1);
+    }
+
+    static Container or(final RunContainer a, final RunContainer b) {
+        final int[] bounds = new int[a.runs.length + b.runs.length];
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.runs.length || j < b.runs.length) {
+            final int start;
+            final int end;
+            if (j == b.runs.length || i < a.runs.length && a.runs[i] <= b.runs[j]) {
+                start = a.runs[i];
+                end = a.end(i / 2);
+                i += 2;
+            } else {
+                start = b.runs[j];
+                end = b.end(j / 2);
+                j += 2;
+            }
+            if (length > 0 && start <= bounds[length - 1] + 1) {
+                bounds[length - 1] = Math.max(bounds[length - 1], end);
+            } else {
+                bounds[length++] = start;
+                bounds[length++] = end;
+            }
+        }
+        return of(bounds, length);
+    }
+
+    static Container and(final RunContainer a, final RunContainer b) {
+        final int[] bounds = new int[a.runs.length + b.runs.length];
+        int length = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.runs.length && j < b.runs.length) {
+            final int end = Math.min(a.end(i / 2), b.end(j / 2));
+            final int start = Math.max(a.runs[i], b.runs[j]);
+            if (start <= end) {
+                bounds[length++] = start;
+                bounds[length++] = end;
+            }
+            if (a.end(i / 2) == end) i += 2;
+            else j += 2;
+        }
+        return of(bounds, length);
+    }
+
+    static Container andNot(final RunContainer a, final RunContainer b) {
+        // every run of b splits at most one run of a in two
+        final int[] bounds = new int[a.runs.length + b.runs.length];
+        int length = 0;
+        int j = 0;
+        for (int i = 0; i < a.runs.length; i += 2) {
+            int start = a.runs[i];
+            final int end = a.end(i / 2);
+            while (j < b.runs.length && b.end(j / 2) < start) j += 2;
+            for (int k = j; k < b.runs.length && b.runs[k] <= end && start <= end; k += 2) {
+                if (b.runs[k] > start) {
+                    bounds[length++] = start;
+                    bounds[length++] = b.runs[k] - 1;
+                }
+                start = b.end(k / 2) + 1;
+            }
+            if (start <= end) {
+                bounds[length++] = start;
+                bounds[length++] = end;
+            }
+        }
+        return of(bounds, length);
+    }
+
+    @Override
+    Container expand() {
+        if (cardinality <= MAX_ARRAY) {
+            final char[] values = new char[cardinality];
+            int k = 0;
+            for (int i = 0; i < runs.length; i += 2) {
+                for (int value = runs[i], end = runs[i] + runs[i + 1]; value <= end; ++value) values[k++] = (char) value;
+            }
+            return new ArrayContainer(values);
+        }
+        final long[] words = new long[BitmapContainer.WORDS];
+        for (int i = 0; i < runs.length; i += 2) BitmapContainer.setRange(words, runs[i], runs[i] + runs[i + 1] + 1);
+        return new BitmapContainer(words, cardinality);
+    }
+
+    @Override
+    void foreach(final int high, final IntConsumer consumer) {
+        for (int i = 0; i < runs.length; i += 2) {
+            for (int value = runs[i], end = runs[i] + runs[i + 1]; value <= end; ++value) consumer.accept(high | value);
+        }
+    }
+
+    @Override
+    PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int run;
+            private int offset;
+
+            @Override
+            public boolean hasNext() {
+                return run < runs.length;
+            }
+
+            @Override
+            public int nextInt() {
+                if (run == runs.length) throw new NoSuchElementException();
+                final int value = runs[run] + offset;
+                if (offset++ == runs[run + 1]) {
+                    run += 2;
+                    offset = 0;
+                }
+                return value;
+            }
+        };
+    }
+
+    @Override
+    Container runOptimize() {
+        return this;
+    }
+}
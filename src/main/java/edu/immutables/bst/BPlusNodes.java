@@ -0,0 +1,415 @@
+package edu.immutables.bst;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Nodes of the B+trees and the structural algorithms they share.
+ * <p>
+ * Keys are held in arrays of type {@code A}: {@code Object[]} for
+ * {@link BPlusTree}, {@code int[]} and {@code long[]} for {@link IntTree}
+ * and {@link LongTree}. Only locating and inserting a key depend on its
+ * type, the trees pass them as a {@link Probe} while path copying, splitting,
+ * merging, borrowing and bulk building are implemented once here on top of
+ * {@link System#arraycopy}.
+ * </p>
+ * <p>
+ * Key arrays are always exactly sized, each node records their width so
+ * the generic code never asks an {@code A} for its length reflectively.
+ * </p>
+ *
+ * @param <A> type of the key arrays
+ */
+abstract class BPlusNodes<A> {
+    static final BPlusNodes<Object[]> OBJECTS = new BPlusNodes<Object[]>(new Object[0]) {
+        @Override
+        Object[] newArray(final int length) {
+            return new Object[length];
+        }
+    };
+
+    static final BPlusNodes<int[]> INTS = new BPlusNodes<int[]>(new int[0]) {
+        @Override
+        int[] newArray(final int length) {
+            return new int[length];
+        }
+    };
+
+    static final BPlusNodes<long[]> LONGS = new BPlusNodes<long[]>(new long[0]) {
+        @Override
+        long[] newArray(final int length) {
+            return new long[length];
+        }
+    };
+
+    /**
+     * Root of every empty tree of this key type.
+     */
+    final Leaf<A> emptyLeaf;
+
+    private BPlusNodes(final A empty) {
+        this.emptyLeaf = new Leaf<>(empty, 0);
+    }
+
+    abstract A newArray(int length);
+
+    /**
+     * Add a key to a tree.
+     *
+     * @return the new root, the same root if the key was already present
+     */
+    Node<A> add(final Node<A> root, final Probe<A> probe, final int order) {
+        final Node<A> newRoot = insert(root, probe, order);
+        if (newRoot == root || newRoot.width <= order) return newRoot;
+        final Split<A> halves = split(newRoot);
+        final Node<A>[] children = newChildren(2);
+        children[0] = halves.left;
+        children[1] = halves.right;
+        return new Inner<>(copyOfRange(halves.keys, halves.separator, halves.separator + 1), children);
+    }
+
+    /**
+     * Remove a key from a tree.
+     *
+     * @return the new root, the same root if the key was not present
+     */
+    Node<A> remove(final Node<A> root, final Probe<A> probe, final int order) {
+        final Node<A> newRoot = delete(root, probe, order);
+        if (newRoot instanceof Inner && newRoot.width == 1) return ((Inner<A>) newRoot).children[0];
+        return newRoot;
+    }
+
+    /**
+     * @return the leaf that holds the key if it is in the tree
+     */
+    static <A> Leaf<A> leaf(Node<A> node, final Probe<A> probe) {
+        while (node instanceof Inner) {
+            node = ((Inner<A>) node).children[childIndex(node.keys, probe)];
+        }
+        return (Leaf<A>) node;
+    }
+
+    /**
+     * Apply an action over the key arrays of the leaves in order.
+     */
+    static <A> void foreachLeaf(final Node<A> node, final Consumer<? super A> action) {
+        if (node instanceof Leaf) {
+            action.accept(node.keys);
+            return;
+        }
+        for (final Node<A> child : ((Inner<A>) node).children) foreachLeaf(child, action);
+    }
+
+    /**
+     * Pack the first {@code length} keys of a sorted array of unique keys into a B+tree bottom up.
+     */
+    Node<A> build(final A sorted, final int length, final int order) {
+        if (length == 0) return emptyLeaf;
+        final int leafCount = (length + order - 1) / order;
+        Node<A>[] level = newChildren(leafCount);
+        A mins = newArray(leafCount);
+        for (int i = 0; i < leafCount; ++i) {
+            final int from = (int) ((long) i * length / leafCount);
+            final int to = (int) ((long) (i + 1) * length / leafCount);
+            level[i] = new Leaf<>(copyOfRange(sorted, from, to), to - from);
+            System.arraycopy(sorted, from, mins, i, 1);
+        }
+        while (level.length > 1) {
+            final int count = (level.length + order - 1) / order;
+            final Node<A>[] parents = newChildren(count);
+            final A parentMins = newArray(count);
+            for (int i = 0; i < count; ++i) {
+                final int from = (int) ((long) i * level.length / count);
+                final int to = (int) ((long) (i + 1) * level.length / count);
+                parents[i] = new Inner<>(copyOfRange(mins, from + 1, to), Arrays.copyOfRange(level, from, to));
+                System.arraycopy(mins, from, parentMins, i, 1);
+            }
+            level = parents;
+            mins = parentMins;
+        }
+        return level[0];
+    }
+
+    private Node<A> insert(final Node<A> node, final Probe<A> probe, final int order) {
+        if (node instanceof Leaf) {
+            final int index = probe.search(node.keys);
+            if (index >= 0) return node;
+            return new Leaf<>(probe.insert(node.keys, -index - 1), node.width + 1);
+        }
+        final Inner<A> inner = (Inner<A>) node;
+        final int index = childIndex(inner.keys, probe);
+        final Node<A> child = inner.children[index];
+        final Node<A> newChild = insert(child, probe, order);
+        if (newChild == child) return node;
+        if (newChild.width <= order) return inner.withChild(index, newChild);
+        final Split<A> halves = split(newChild);
+        final Node<A>[] children = newChildren(inner.width + 1);
+        System.arraycopy(inner.children, 0, children, 0, index);
+        children[index] = halves.left;
+        children[index + 1] = halves.right;
+        System.arraycopy(inner.children, index + 1, children, index + 2, inner.width - index - 1);
+        return new Inner<>(insertAt(inner.keys, inner.width - 1, index, halves.keys, halves.separator), children);
+    }
+
+    /**
+     * Remove a key, an underfull child is merged with a sibling and split
+     * again when the merged node is overfull, which borrows keys from the sibling.
+     */
+    private Node<A> delete(final Node<A> node, final Probe<A> probe, final int order) {
+        if (node instanceof Leaf) {
+            final int index = probe.search(node.keys);
+            if (index < 0) return node;
+            return new Leaf<>(removeAt(node.keys, node.width, index), node.width - 1);
+        }
+        final Inner<A> inner = (Inner<A>) node;
+        final int index = childIndex(inner.keys, probe);
+        final Node<A> child = inner.children[index];
+        final Node<A> newChild = delete(child, probe, order);
+        if (newChild == child) return node;
+        if (!isUnderfull(newChild, order)) return inner.withChild(index, newChild);
+
+        final int lo = index > 0 ? index - 1 : index;
+        final Node<A> left = lo == index ? newChild : inner.children[lo];
+        final Node<A> right = lo == index ? inner.children[lo + 1] : newChild;
+        final Node<A> merged = concat(left, inner.keys, lo, right);
+        if (merged.width > order) {
+            final Split<A> halves = split(merged);
+            final Node<A>[] children = inner.children.clone();
+            children[lo] = halves.left;
+            children[lo + 1] = halves.right;
+            final A keys = copyOfRange(inner.keys, 0, inner.width - 1);
+            System.arraycopy(halves.keys, halves.separator, keys, lo, 1);
+            return new Inner<>(keys, children);
+        }
+        final Node<A>[] children = newChildren(inner.width - 1);
+        System.arraycopy(inner.children, 0, children, 0, lo);
+        children[lo] = merged;
+        System.arraycopy(inner.children, lo + 2, children, lo + 1, inner.width - lo - 2);
+        return new Inner<>(removeAt(inner.keys, inner.width - 1, lo), children);
+    }
+
+    private static boolean isUnderfull(final Node<?> node, final int order) {
+        return node instanceof Leaf ? node.width < order / 2 : node.width < (order + 1) / 2;
+    }
+
+    /**
+     * Split an overfull node in two halves.
+     */
+    private Split<A> split(final Node<A> node) {
+        final int width = node.width;
+        final int mid = width / 2;
+        if (node instanceof Leaf) {
+            final Leaf<A> right = new Leaf<>(copyOfRange(node.keys, mid, width), width - mid);
+            return new Split<>(new Leaf<>(copyOfRange(node.keys, 0, mid), mid), right.keys, 0, right);
+        }
+        final Inner<A> inner = (Inner<A>) node;
+        final Inner<A> left = new Inner<>(copyOfRange(inner.keys, 0, mid - 1),
+                Arrays.copyOfRange(inner.children, 0, mid));
+        final Inner<A> right = new Inner<>(copyOfRange(inner.keys, mid, width - 1),
+                Arrays.copyOfRange(inner.children, mid, width));
+        return new Split<>(left, inner.keys, mid - 1, right);
+    }
+
+    /**
+     * Concatenate two sibling nodes, inner nodes are joined by the separator at the given index.
+     */
+    private Node<A> concat(final Node<A> left, final A separators, final int separator, final Node<A> right) {
+        if (left instanceof Leaf) {
+            final A keys = newArray(left.width + right.width);
+            System.arraycopy(left.keys, 0, keys, 0, left.width);
+            System.arraycopy(right.keys, 0, keys, left.width, right.width);
+            return new Leaf<>(keys, left.width + right.width);
+        }
+        final int leftLength = left.width - 1;
+        final int rightLength = right.width - 1;
+        final Inner<A> l = (Inner<A>) left;
+        final Inner<A> r = (Inner<A>) right;
+        final A keys = newArray(leftLength + 1 + rightLength);
+        System.arraycopy(l.keys, 0, keys, 0, leftLength);
+        System.arraycopy(separators, separator, keys, leftLength, 1);
+        System.arraycopy(r.keys, 0, keys, leftLength + 1, rightLength);
+        final Node<A>[] children = Arrays.copyOf(l.children, l.children.length + r.children.length);
+        System.arraycopy(r.children, 0, children, l.children.length, r.children.length);
+        return new Inner<>(keys, children);
+    }
+
+    /**
+     * Index of the child of an inner node that might hold the key,
+     * keys equal to a separator live in the subtree to its right.
+     */
+    private static <A> int childIndex(final A keys, final Probe<A> probe) {
+        final int index = probe.search(keys);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private A copyOfRange(final A keys, final int from, final int to) {
+        final A result = newArray(to - from);
+        System.arraycopy(keys, from, result, 0, to - from);
+        return result;
+    }
+
+    private A insertAt(final A keys, final int length, final int index, final A source, final int sourceIndex) {
+        final A result = newArray(length + 1);
+        System.arraycopy(keys, 0, result, 0, index);
+        System.arraycopy(source, sourceIndex, result, index, 1);
+        System.arraycopy(keys, index, result, index + 1, length - index);
+        return result;
+    }
+
+    private A removeAt(final A keys, final int length, final int index) {
+        final A result = newArray(length - 1);
+        System.arraycopy(keys, 0, result, 0, index);
+        System.arraycopy(keys, index + 1, result, index, length - index - 1);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <A> Node<A>[] newChildren(final int length) {
+        return (Node<A>[]) new Node<?>[length];
+    }
+
+    /**
+     * Key being looked up, added or removed.
+     *
+     * @param <A> type of the key arrays
+     */
+    interface Probe<A> {
+        /**
+         * @return index of the key among the sorted keys if found, {@code -(insertion point) - 1} otherwise
+         */
+        int search(A keys);
+
+        /**
+         * @param keys  sorted keys not holding the key
+         * @param index insertion point of the key
+         * @return a copy of the keys with the key inserted at the index
+         */
+        A insert(A keys, int index);
+    }
+
+    /**
+     * Node of a B+tree, keys are never modified after construction.
+     */
+    abstract static class Node<A> {
+        final A keys;
+
+        /**
+         * Number of keys in a leaf or number of children in an inner node.
+         */
+        final int width;
+
+        Node(final A keys, final int width) {
+            this.keys = keys;
+            this.width = width;
+        }
+
+        /**
+         * @return number of keys under this node
+         */
+        abstract int size();
+    }
+
+    /**
+     * Leaf node holding the keys themselves.
+     */
+    static final class Leaf<A> extends Node<A> {
+        Leaf(final A keys, final int width) {
+            super(keys, width);
+        }
+
+        @Override
+        int size() {
+            return width;
+        }
+    }
+
+    /**
+     * Inner node, {@code keys[i]} is the smallest key that might be
+     * found under {@code children[i + 1]}.
+     */
+    static final class Inner<A> extends Node<A> {
+        final Node<A>[] children;
+        private final int size;
+
+        Inner(final A keys, final Node<A>[] children) {
+            super(keys, children.length);
+            this.children = children;
+            int total = 0;
+            for (final Node<A> child : children) total += child.size();
+            this.size = total;
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        Inner<A> withChild(final int index, final Node<A> child) {
+            final Node<A>[] newChildren = children.clone();
+            newChildren[index] = child;
+            return new Inner<>(keys, newChildren);
+        }
+    }
+
+    /**
+     * Two halves of a split node and the separator between them,
+     * held as an index into a key array to keep primitive keys unboxed.
+     */
+    private static final class Split<A> {
+        final Node<A> left;
+        final A keys;
+        final int separator;
+        final Node<A> right;
+
+        Split(final Node<A> left, final A keys, final int separator, final Node<A> right) {
+            this.left = left;
+            this.keys = keys;
+            this.separator = separator;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Walk over the leaves of a tree in order keeping the path from the root.
+     *
+     * @param <A> type of the key arrays
+     */
+    static final class Leaves<A> {
+        private Inner<A>[] path = newPath(4);
+        private int[] positions = new int[4];
+        private int depth;
+        private Node<A> pending;
+
+        Leaves(final Node<A> root) {
+            this.pending = root;
+        }
+
+        /**
+         * @return the next leaf, null once every leaf was returned
+         */
+        Leaf<A> next() {
+            Node<A> node = pending;
+            pending = null;
+            if (node == null) {
+                while (depth > 0 && positions[depth - 1] == path[depth - 1].children.length - 1) --depth;
+                if (depth == 0) return null;
+                node = path[depth - 1].children[++positions[depth - 1]];
+            }
+            while (node instanceof Inner) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                    positions = Arrays.copyOf(positions, depth * 2);
+                }
+                path[depth] = (Inner<A>) node;
+                positions[depth++] = 0;
+                node = ((Inner<A>) node).children[0];
+            }
+            return (Leaf<A>) node;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <A> Inner<A>[] newPath(final int length) {
+            return (Inner<A>[]) new Inner<?>[length];
+        }
+    }
+}
@@ -0,0 +1,576 @@
+package edu.immutables.bst;
+
+import edu.immutables.bst.BPlusNodes.Inner;
+import edu.immutables.bst.BPlusNodes.Leaf;
+import edu.immutables.bst.BPlusNodes.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Persistent B+tree implementation of {@link Tree}.
+ * <p>
+ * Elements are held in sorted arrays inside the leaves while inner nodes
+ * only hold separator keys, so a lookup does about log32(n) dependent
+ * pointer chases and a binary search inside each node. Updates copy the
+ * nodes on the path from the root to the affected leaf, every other node
+ * is shared with the previous version.
+ * </p>
+ * <p>
+ * Leaves are not linked together since sibling pointers cannot survive
+ * path copying, iteration keeps the path from the root instead.
+ * </p>
+ * <p>
+ * Elements are ordered either by their natural ordering or by an explicit
+ * comparator, which is held once by the tree rather than by every node.
+ * </p>
+ *
+ * @param <T> type of elements held by the tree
+ */
+public final class BPlusTree<T> implements Tree<T> {
+    /**
+     * Default maximum number of keys per leaf and children per inner node.
+     */
+    static final int DEFAULT_ORDER = 32;
+
+    /**
+     * Batches of at least {@code size / REBUILD_RATIO} elements are merged
+     * with the tree and packed again in O(n + k) rather than applied one
+     * path copy at a time, each of which copies about {@code order} keys
+     * per level.
+     */
+    private static final int REBUILD_RATIO = 64;
+
+    private static final BPlusNodes<Object[]> NODES = BPlusNodes.OBJECTS;
+
+    private final Node<Object[]> root;
+    private final int size;
+    private final int order;
+    private final Comparator<? super T> comparator;
+
+    private BPlusTree(final Node<Object[]> root, final int size, final int order, final Comparator<? super T> comparator) {
+        this.root = root;
+        this.size = size;
+        this.order = order;
+        this.comparator = comparator;
+    }
+
+    Node<Object[]> root() {
+        return root;
+    }
+
+    @Override
+    public Tree<T> add(T element) {
+        final Node<Object[]> newRoot = NODES.add(root, new Probe(element), order);
+        return newRoot == root ? this : new BPlusTree<>(newRoot, size + 1, order, comparator);
+    }
+
+    @Override
+    public Tree<T> remove(T element) {
+        final Node<Object[]> newRoot = NODES.remove(root, new Probe(element), order);
+        return newRoot == root ? this : new BPlusTree<>(newRoot, size - 1, order, comparator);
+    }
+
+    @Override
+    public Tree<T> addAll(Iterable<? extends T> elements) {
+        final List<T> batch = new ArrayList<>();
+        for (final T element : elements) batch.add(element);
+        if (batch.size() < size / REBUILD_RATIO) return Tree.super.addAll(batch);
+        return union(of(comparator, batch, order));
+    }
+
+    @Override
+    public Tree<T> addAllSorted(Stream<? extends T> sorted) {
+        final List<T> batch = Tree.getSortedUniqueElements(sorted.iterator(), comparator);
+        if (batch.size() < size / REBUILD_RATIO) return Tree.super.addAll(batch);
+        return union(new BPlusTree<>(NODES.build(batch.toArray(), batch.size(), order), batch.size(), order, comparator));
+    }
+
+    @Override
+    public Tree<T> removeAll(Iterable<? extends T> elements) {
+        final List<T> batch = new ArrayList<>();
+        for (final T element : elements) batch.add(element);
+        if (batch.size() < size / REBUILD_RATIO) return Tree.super.removeAll(batch);
+        return difference(of(comparator, batch, order).iterator());
+    }
+
+    @Override
+    public Tree<T> removeAllSorted(Stream<? extends T> sorted) {
+        final List<T> batch = Tree.getSortedUniqueElements(sorted.iterator(), comparator);
+        if (batch.size() < size / REBUILD_RATIO) return Tree.super.removeAll(batch);
+        return difference(batch.iterator());
+    }
+
+    @Override
+    public <U extends Comparable<U>> Tree<U> map(Function<? super T, ? extends U> f) {
+        final List<U> mapped = new ArrayList<>(size);
+        foreach(element -> mapped.add(f.apply(element)));
+        return BPlusTree.of(mapped, order);
+    }
+
+    @Override
+    public <U extends Comparable<U>> Tree<U> mapMonotonic(Function<? super T, ? extends U> f) {
+        return new BPlusTree<>(mapNode(root, f), size, order, Comparator.naturalOrder());
+    }
+
+    @Override
+    public <U extends Comparable<U>> Tree<U> flatMap(Function<? super T, ? extends Tree<U>> f) {
+        final List<U> mapped = new ArrayList<>();
+        foreach(element -> f.apply(element).foreach(mapped::add));
+        return BPlusTree.of(mapped, order);
+    }
+
+    @Override
+    public void foreach(Consumer<? super T> consumer) {
+        foreach(root, consumer);
+    }
+
+    @Override
+    public boolean contains(T element) {
+        return search(BPlusNodes.leaf(root, new Probe(element)).keys, element) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public Tree<T> union(Tree<T> other) {
+        if (other.size() == 0) return this;
+        if (!comparator.equals(other.comparator())) {
+            Tree<T> result = this;
+            for (final T element : other) result = result.add(element);
+            return result;
+        }
+        if (size == 0 && other instanceof BPlusTree) return other;
+        final List<T> merged = new ArrayList<>(size + other.size());
+        final Iterator<T> left = iterator();
+        final Iterator<T> right = other.iterator();
+        T l = left.hasNext() ? left.next() : null;
+        T r = right.hasNext() ? right.next() : null;
+        while (l != null && r != null) {
+            final int cmp = comparator.compare(l, r);
+            if (cmp <= 0) {
+                merged.add(l);
+                if (cmp == 0) r = right.hasNext() ? right.next() : null;
+                l = left.hasNext() ? left.next() : null;
+            } else {
+                merged.add(r);
+                r = right.hasNext() ? right.next() : null;
+            }
+        }
+        for (; l != null; l = left.hasNext() ? left.next() : null) merged.add(l);
+        for (; r != null; r = right.hasNext() ? right.next() : null) merged.add(r);
+        return new BPlusTree<>(NODES.build(merged.toArray(), merged.size(), order), merged.size(), order, comparator);
+    }
+
+    /**
+     * Remove sorted unique elements by merging them with the tree.
+     */
+    private Tree<T> difference(final Iterator<T> sorted) {
+        final List<T> remaining = new ArrayList<>(size);
+        T removed = sorted.hasNext() ? sorted.next() : null;
+        for (final T element : this) {
+            int cmp = -1;
+            while (removed != null && (cmp = comparator.compare(removed, element)) < 0) {
+                removed = sorted.hasNext() ? sorted.next() : null;
+            }
+            if (removed == null || cmp != 0) remaining.add(element);
+        }
+        if (remaining.size() == size) return this;
+        return new BPlusTree<>(NODES.build(remaining.toArray(), remaining.size(), order), remaining.size(), order, comparator);
+    }
+
+    @Override
+    public List<T> toList() {
+        final List<T> result = new ArrayList<>(size);
+        foreach(result::add);
+        return result;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        final ArrayDeque<Node<Object[]>> nodes = new ArrayDeque<>();
+        nodes.add(root);
+        return new NodeSpliterator(nodes, NODES.emptyLeaf.keys, 0, 0, size);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final BPlusTree<?> other = (BPlusTree<?>) o;
+        if (size != other.size) return false;
+        final Iterator<?> it = other.iterator();
+        for (final T element : this) {
+            if (!element.equals(it.next())) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (final T element : this) hash += element.hashCode();
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringJoiner joiner = new StringJoiner(" ");
+        foreach(element -> joiner.add(String.valueOf(element)));
+        return joiner.toString();
+    }
+
+    /**
+     * Return an empty B+tree.
+     *
+     * @param <T> type of the returned tree
+     * @return an empty B+tree
+     */
+    public static <T extends Comparable<T>> BPlusTree<T> empty() {
+        return empty(DEFAULT_ORDER);
+    }
+
+    /**
+     * Return an empty B+tree with a given node capacity.
+     *
+     * @param order maximum number of keys per leaf and children per inner node
+     * @param <T> type of the returned tree
+     * @return an empty B+tree
+     */
+    static <T extends Comparable<T>> BPlusTree<T> empty(final int order) {
+        return empty(Comparator.naturalOrder(), order);
+    }
+
+    /**
+     * Return an empty B+tree ordered by a given comparator.
+     *
+     * @param comparator comparator used to order the elements
+     * @param <T> type of the returned tree
+     * @return an empty B+tree
+     */
+    public static <T> BPlusTree<T> empty(final Comparator<? super T> comparator) {
+        return empty(comparator, DEFAULT_ORDER);
+    }
+
+    static <T> BPlusTree<T> empty(final Comparator<? super T> comparator, final int order) {
+        if (order < 4) throw new IllegalArgumentException("Order must be at least 4: " + order);
+        return new BPlusTree<>(NODES.emptyLeaf, 0, order, comparator);
+    }
+
+    /**
+     * Factory method to build a B+tree from a list.
+     * <p>
+     * The given list is not modified.
+     * </p>
+     *
+     * @param list list to build from
+     * @param <T> type of elements held by the list
+     * @return a new B+tree of the elements of the list
+     */
+    public static <T extends Comparable<T>> BPlusTree<T> of(final List<T> list) {
+        return of(list, DEFAULT_ORDER);
+    }
+
+    static <T extends Comparable<T>> BPlusTree<T> of(final List<T> list, final int order) {
+        return of(Comparator.naturalOrder(), list, order);
+    }
+
+    /**
+     * Factory method to build a B+tree ordered by a given comparator from a list.
+     * <p>
+     * The given list is not modified.
+     * </p>
+     *
+     * @param comparator comparator used to order the elements
+     * @param list list to build from
+     * @param <T> type of elements held by the list
+     * @return a new B+tree of the elements of the list
+     */
+    public static <T> BPlusTree<T> of(final Comparator<? super T> comparator, final List<T> list) {
+        return of(comparator, list, DEFAULT_ORDER);
+    }
+
+    static <T> BPlusTree<T> of(final Comparator<? super T> comparator, final List<T> list, final int order) {
+        final Object[] sorted = list.toArray();
+        Arrays.sort(sorted, BPlusTree.<T>objectComparator(comparator));
+        int unique = 0;
+        for (int i = 0; i < sorted.length; ++i) {
+            if (unique > 0 && comparator.compare(key(sorted, i), key(sorted, unique - 1)) == 0) continue;
+            sorted[unique++] = sorted[i];
+        }
+        return new BPlusTree<>(NODES.build(sorted, unique, order), unique, order, comparator);
+    }
+
+    /**
+     * Factory method to build a B+tree from multiple arguments.
+     *
+     * @param a elements to build from
+     * @param <T> type of elements
+     * @return B+tree of the given elements
+     */
+    @SafeVarargs
+    public static <T extends Comparable<T>> BPlusTree<T> of(final T... a) {
+        return of(Arrays.asList(a));
+    }
+
+    /**
+     * Build a B+tree from elements that are already sorted.
+     * <p>
+     * Running time of this operation is O(n), leaves are packed bottom up
+     * and adjacent duplicates are dropped.
+     * </p>
+     *
+     * @param sorted iterator over elements in ascending order
+     * @param <T> type of elements
+     * @return a new B+tree of the given elements
+     * @throws IllegalArgumentException if the elements are not sorted
+     */
+    public static <T extends Comparable<T>> BPlusTree<T> ofSorted(final Iterator<? extends T> sorted) {
+        return ofSorted(Comparator.naturalOrder(), sorted);
+    }
+
+    /**
+     * Build a B+tree from elements that are already sorted by a given comparator.
+     *
+     * @param comparator comparator the elements are sorted by
+     * @param sorted iterator over elements in ascending order
+     * @param <T> type of elements
+     * @return a new B+tree of the given elements
+     * @throws IllegalArgumentException if the elements are not sorted
+     * @see #ofSorted(Iterator)
+     */
+    public static <T> BPlusTree<T> ofSorted(final Comparator<? super T> comparator,
+                                            final Iterator<? extends T> sorted) {
+        final List<T> list = Tree.getSortedUniqueElements(sorted, comparator);
+        return new BPlusTree<>(NODES.build(list.toArray(), list.size(), DEFAULT_ORDER), list.size(), DEFAULT_ORDER, comparator);
+    }
+
+    /**
+     * Map the elements held by the leaves, the separators are taken from the
+     * mapped leaves since the old ones may be elements that were removed.
+     */
+    private static <T, U> Node<Object[]> mapNode(final Node<Object[]> node, final Function<? super T, ? extends U> f) {
+        if (node instanceof Leaf) {
+            final Object[] keys = new Object[node.keys.length];
+            for (int i = 0; i < keys.length; ++i) keys[i] = f.apply(BPlusTree.<T>key(node.keys, i));
+            return new Leaf<>(keys, keys.length);
+        }
+        final Node<Object[]>[] children = ((Inner<Object[]>) node).children;
+        final Node<Object[]>[] mappedChildren = BPlusNodes.newChildren(children.length);
+        final Object[] keys = new Object[children.length - 1];
+        for (int i = 0; i < children.length; ++i) {
+            mappedChildren[i] = mapNode(children[i], f);
+            if (i > 0) keys[i - 1] = first(mappedChildren[i]);
+        }
+        return new Inner<>(keys, mappedChildren);
+    }
+
+    private static Object first(Node<Object[]> node) {
+        while (node instanceof Inner) node = ((Inner<Object[]>) node).children[0];
+        return node.keys[0];
+    }
+
+    private static <T> void foreach(final Node<Object[]> node, final Consumer<? super T> consumer) {
+        BPlusNodes.foreachLeaf(node, keys -> {
+            for (int i = 0; i < keys.length; ++i) consumer.accept(BPlusTree.<T>key(keys, i));
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T key(final Object[] keys, final int index) {
+        return (T) keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Comparator<Object> objectComparator(final Comparator<? super T> comparator) {
+        return (a, b) -> comparator.compare((T) a, (T) b);
+    }
+
+    /**
+     * Binary search for an element among the sorted keys.
+     *
+     * @return index of the element if found, {@code -(insertion point) - 1} otherwise
+     */
+    private int search(final Object[] keys, final T element) {
+        int lo = 0;
+        int hi = keys.length - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int cmp = comparator.compare(element, key(keys, mid));
+            if (cmp < 0) hi = mid - 1;
+            else if (cmp > 0) lo = mid + 1;
+            else return mid;
+        }
+        return -lo - 1;
+    }
+
+    /**
+     * Spliterator over a slice of a leaf followed by whole subtrees,
+     * it splits at child boundaries using the subtree sizes held by inner nodes.
+     */
+    private final class NodeSpliterator implements Spliterator<T> {
+        private final ArrayDeque<Node<Object[]>> nodes;
+        private Object[] keys;
+        private int index;
+        private int fence;
+        private int remaining;
+
+        NodeSpliterator(final ArrayDeque<Node<Object[]>> nodes, final Object[] keys,
+                        final int index, final int fence, final int remaining) {
+            this.nodes = nodes;
+            this.keys = keys;
+            this.index = index;
+            this.fence = fence;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            while (index == fence) {
+                if (nodes.isEmpty()) return false;
+                Node<Object[]> node = nodes.pollFirst();
+                while (node instanceof Inner) {
+                    final Node<Object[]>[] children = ((Inner<Object[]>) node).children;
+                    for (int i = children.length - 1; i > 0; --i) nodes.addFirst(children[i]);
+                    node = children[0];
+                }
+                keys = node.keys;
+                index = 0;
+                fence = keys.length;
+            }
+            --remaining;
+            action.accept(key(keys, index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            while (index < fence) action.accept(key(keys, index++));
+            while (!nodes.isEmpty()) foreach(nodes.pollFirst(), action);
+            remaining = 0;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (index == fence && nodes.size() == 1) {
+                final Node<Object[]> node = nodes.pollFirst();
+                if (node instanceof Inner) {
+                    nodes.addAll(Arrays.asList(((Inner<Object[]>) node).children));
+                } else {
+                    keys = node.keys;
+                    index = 0;
+                    fence = keys.length;
+                }
+            }
+            final int take = nodes.size() / 2;
+            if (take == 0 && (index == fence || nodes.isEmpty())) {
+                if (fence - index < 2) return null;
+                final int mid = (index + fence) >>> 1;
+                final NodeSpliterator prefix = new NodeSpliterator(new ArrayDeque<>(), keys, index, mid, mid - index);
+                remaining -= mid - index;
+                index = mid;
+                return prefix;
+            }
+            final ArrayDeque<Node<Object[]>> prefixNodes = new ArrayDeque<>();
+            int prefixSize = fence - index;
+            for (int i = 0; i < take; ++i) {
+                final Node<Object[]> node = nodes.pollFirst();
+                prefixNodes.add(node);
+                prefixSize += node.size();
+            }
+            final NodeSpliterator prefix = new NodeSpliterator(prefixNodes, keys, index, fence, prefixSize);
+            index = fence;
+            remaining -= prefixSize;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator == Comparator.naturalOrder() ? null : comparator;
+        }
+    }
+
+    /**
+     * Element looked up through the comparator of the tree.
+     */
+    private final class Probe implements BPlusNodes.Probe<Object[]> {
+        private final T element;
+
+        Probe(final T element) {
+            this.element = element;
+        }
+
+        @Override
+        public int search(final Object[] keys) {
+            return BPlusTree.this.search(keys, element);
+        }
+
+        @Override
+        public Object[] insert(final Object[] keys, final int index) {
+            final Object[] result = new Object[keys.length + 1];
+            System.arraycopy(keys, 0, result, 0, index);
+            result[index] = element;
+            System.arraycopy(keys, index, result, index + 1, keys.length - index);
+            return result;
+        }
+    }
+
+    /**
+     * In order iterator over the keys of one leaf at a time.
+     */
+    private final class Itr implements Iterator<T> {
+        private final BPlusNodes.Leaves<Object[]> leaves = new BPlusNodes.Leaves<>(root);
+        private Object[] keys = NODES.emptyLeaf.keys;
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            while (index == keys.length) {
+                final Leaf<Object[]> leaf = leaves.next();
+                if (leaf == null) return false;
+                keys = leaf.keys;
+                index = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return key(keys, index++);
+        }
+    }
+}
@@ -1,115 +1,629 @@
 package edu.immutables.bst;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Representation of Inner node in the tree.
+ * <p>
+ * A node without children is a {@link Leaf} holding nothing but its
+ * value, every other node is a {@link Full} node, a missing child being
+ * the shared empty {@link Tip}. Half the nodes of a balanced tree are
+ * leaves, while sticking to two layouts keeps the calls to
+ * {@link #left()} and {@link #right()} bimorphic on trees built by the
+ * persistent operations. Use {@link #of(Comparable, Tree, Tree)} to get
+ * the right layout.
+ * </p>
+ * <p>
+ * Nodes built by the persistent operations only have final fields.
+ * {@link Owned} nodes are created by a {@link TransientTree} and updated in
+ * place while it is alive, they stay in the tree it returns and are never
+ * written again once its edit token is dropped. Such a tree has to be
+ * published safely, see {@link TransientTree#persistent()}.
+ * </p>
  *
  * @param <T> type of elements held by the tree
  * @author tarek-nawara
  */
-class Branch<T extends Comparable<T>> implements Tree<T> {
-    private final Tree<T> left;
-    private final Tree<T> right;
-    private final T value;
-    private final int size;
+abstract class Branch<T extends Comparable<T>> implements Tree<T> {
+    final T value;
 
-    Branch(final T value, final Tree<T> left, final Tree<T> right) {
+    Branch(final T value) {
         this.value = value;
-        this.left = left;
-        this.right = right;
-        this.size = 1 + left.size() + right.size();
     }
 
+    /**
+     * Build a node with the smallest layout holding the given children.
+     */
+    static <T extends Comparable<T>> Branch<T> of(final T value, final Tree<T> left, final Tree<T> right) {
+        if (left instanceof Tip && right instanceof Tip) return new Leaf<>(value);
+        return new Full<>(value, left, right);
+    }
+
+    abstract Tree<T> left();
+
+    abstract Tree<T> right();
+
     @Override
     public Tree<T> add(T element) {
         int cmp = element.compareTo(value);
-        if (cmp < 0) return new Branch<>(value, left.add(element), right);
-        else if (cmp > 0) return new Branch<>(value, left, right.add(element));
+        if (cmp < 0) return of(value, left().add(element), right());
+        else if (cmp > 0) return of(value, left(), right().add(element));
         return this;
     }
 
     @Override
     public Tree<T> remove(T element) {
         int cmp = element.compareTo(value);
-        if (cmp < 0) return new Branch<>(value, left.remove(element), right);
-        else if (cmp > 0) return new Branch<>(value, left, right.remove(element));
-        return left.union(right);
+        if (cmp < 0) return of(value, left().remove(element), right());
+        else if (cmp > 0) return of(value, left(), right().remove(element));
+        return left().union(right());
+    }
+
+    @Override
+    public Tree<T> addAll(Iterable<? extends T> elements) {
+        final List<T> batch = sortedBatch(elements);
+        return insertAll(this, batch, 0, batch.size());
+    }
+
+    @Override
+    public Tree<T> addAllSorted(Stream<? extends T> sorted) {
+        final List<T> batch = Tree.getSortedUniqueElements(sorted.iterator(), comparator());
+        return insertAll(this, batch, 0, batch.size());
+    }
+
+    @Override
+    public Tree<T> removeAll(Iterable<? extends T> elements) {
+        final List<T> batch = sortedBatch(elements);
+        return deleteAll(this, batch, 0, batch.size());
+    }
+
+    @Override
+    public Tree<T> removeAllSorted(Stream<? extends T> sorted) {
+        final List<T> batch = Tree.getSortedUniqueElements(sorted.iterator(), comparator());
+        return deleteAll(this, batch, 0, batch.size());
+    }
+
+    @Override
+    public TransientTree<T> asTransient() {
+        return new Editor<>(this);
     }
 
     @Override
     public <U extends Comparable<U>> Tree<U> map(Function<? super T, ? extends U> f) {
-        return this.toList().stream().map(f)
-                .reduce(Tree.empty(), Tree::add, Tree::union);
+        final List<U> mapped = new ArrayList<>(size());
+        foreach(element -> mapped.add(f.apply(element)));
+        return Tree.of(mapped);
+    }
+
+    @Override
+    public <U extends Comparable<U>> Tree<U> mapMonotonic(Function<? super T, ? extends U> f) {
+        final Tree<U> mappedLeft = left().mapMonotonic(f);
+        final U mappedValue = f.apply(value);
+        return of(mappedValue, mappedLeft, right().mapMonotonic(f));
     }
 
     @Override
     public <U extends Comparable<U>> Tree<U> flatMap(Function<? super T, ? extends Tree<U>> f) {
-        return this.toList().stream().map(f).reduce(Tree.empty(), Tree::union, Tree::union);
+        final List<U> mapped = new ArrayList<>();
+        foreach(element -> f.apply(element).foreach(mapped::add));
+        return Tree.of(mapped);
     }
 
     @Override
     public void foreach(Consumer<? super T> consumer) {
-        left.foreach(consumer);
+        left().foreach(consumer);
         consumer.accept(value);
-        right.foreach(consumer);
+        right().foreach(consumer);
     }
 
     @Override
     public boolean contains(T element) {
-        final int cmp = element.compareTo(value);
-        if (cmp < 0) return left.contains(element);
-        else if (cmp > 0) return right.contains(element);
-        return true;
+        Tree<T> node = this;
+        while (node instanceof Branch) {
+            final Branch<T> branch = (Branch<T>) node;
+            final int cmp = element.compareTo(branch.value);
+            if (cmp == 0) return true;
+            node = cmp < 0 ? branch.left() : branch.right();
+        }
+        return false;
     }
 
     @Override
-    public int size() {
-        return size;
+    public Comparator<? super T> comparator() {
+        return Comparator.naturalOrder();
+    }
+
+    @Override
+    public TreeDiff<T> diff(Tree<T> other) {
+        if (!(other instanceof Branch || other instanceof Tip)) return Tree.super.diff(other);
+        final List<T> added = new ArrayList<>();
+        final List<T> removed = new ArrayList<>();
+        diff(this, other, added, removed);
+        return new TreeDiff<>(added, removed);
     }
 
     @Override
     public Tree<T> union(Tree<T> other) {
-        return left.union(right.union(other.add(value)));
+        return left().union(right().union(other.add(value)));
     }
 
     @Override
     public List<T> toList() {
-        final List<T> result = new ArrayList<>();
-        result.addAll(left.toList());
-        result.add(value);
-        result.addAll(right.toList());
+        final List<T> result = new ArrayList<>(size());
+        foreach(result::add);
         return result;
     }
 
     @Override
     public Iterator<T> iterator() {
-        return this.toList().iterator();
+        return Spliterators.iterator(spliterator());
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new BranchSpliterator<>(this, new ArrayDeque<>(), size());
     }
 
     @Override
     public boolean equals(final Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Branch)) return false;
         final Branch<?> branch = (Branch<?>) o;
-        return size == branch.size &&
-                Objects.equals(left, branch.left) &&
-                Objects.equals(right, branch.right) &&
+        return size() == branch.size() && hashCode() == branch.hashCode() &&
+                Objects.equals(left(), branch.left()) &&
+                Objects.equals(right(), branch.right()) &&
                 Objects.equals(value, branch.value);
     }
 
+    /**
+     * Content hash of the tree, the sum of the hashes of its elements.
+     * <p>
+     * It is computed once when the node is built from the cached hashes
+     * of its children, so it is O(1).
+     * </p>
+     */
     @Override
-    public int hashCode() {
-        return Objects.hash(left, right, value, size);
-    }
+    public abstract int hashCode();
 
     @Override
     public String toString() {
-        return left + " " + value + " " + right;
+        return left() + " " + value + " " + right();
+    }
+
+    /**
+     * Add an element, editing in place the nodes owned by the given edit token.
+     *
+     * @return root of the edited tree
+     */
+    static <T extends Comparable<T>> Tree<T> addInPlace(final Tree<T> tree, final T element, final Object edit) {
+        if (tree instanceof Tip) return new Leaf<>(element);
+        final Branch<T> branch = (Branch<T>) tree;
+        final int cmp = element.compareTo(branch.value);
+        if (cmp == 0) return branch;
+        final Tree<T> child = cmp < 0 ? branch.left() : branch.right();
+        final int childSize = child.size();
+        final Tree<T> newChild = addInPlace(child, element, edit);
+        if (newChild == child && newChild.size() == childSize) return branch;
+        final Owned<T> editable = branch.editable(edit);
+        if (cmp < 0) editable.relink(newChild, editable.right());
+        else editable.relink(editable.left(), newChild);
+        return editable;
+    }
+
+    /**
+     * Remove an element, editing in place the nodes owned by the given edit token.
+     *
+     * @return root of the edited tree
+     */
+    static <T extends Comparable<T>> Tree<T> removeInPlace(final Tree<T> tree, final T element, final Object edit) {
+        if (tree instanceof Tip) return tree;
+        final Branch<T> branch = (Branch<T>) tree;
+        final int cmp = element.compareTo(branch.value);
+        if (cmp == 0) return joinInPlace(branch.left(), branch.right(), edit);
+        final Tree<T> child = cmp < 0 ? branch.left() : branch.right();
+        final int childSize = child.size();
+        final Tree<T> newChild = removeInPlace(child, element, edit);
+        if (newChild == child && newChild.size() == childSize) return branch;
+        if (newChild instanceof Tip && (cmp < 0 ? branch.right() : branch.left()) instanceof Tip) {
+            return new Leaf<>(branch.value);
+        }
+        final Owned<T> editable = branch.editable(edit);
+        if (cmp < 0) editable.relink(newChild, editable.right());
+        else editable.relink(editable.left(), newChild);
+        return editable;
+    }
+
+    /**
+     * Join two trees like {@link #join(Tree, Tree)}, the new root and the
+     * path to the removed minimum are owned by the given edit token.
+     */
+    private static <T extends Comparable<T>> Tree<T> joinInPlace(final Tree<T> left, final Tree<T> right,
+                                                                  final Object edit) {
+        if (left instanceof Tip) return right;
+        if (right instanceof Tip) return left;
+        Branch<T> min = (Branch<T>) right;
+        while (min.left() instanceof Branch) min = (Branch<T>) min.left();
+        return new Owned<>(min.value, left, removeInPlace(right, min.value, edit), edit);
+    }
+
+    /**
+     * @return this node if it is owned by the given edit token, an owned copy otherwise
+     */
+    private Owned<T> editable(final Object edit) {
+        if (this instanceof Owned && ((Owned<T>) this).edit == edit) return (Owned<T>) this;
+        return new Owned<>(value, left(), right(), edit);
+    }
+
+    /**
+     * Sort a batch of elements and drop the duplicates.
+     */
+    static <T extends Comparable<T>> List<T> sortedBatch(final Iterable<? extends T> elements) {
+        final List<T> batch = new ArrayList<>();
+        for (final T element : elements) batch.add(element);
+        Collections.sort(batch);
+        return Tree.removeAdjacentDuplicates(batch);
+    }
+
+    /**
+     * Insert a sorted slice of unique elements in a single descent,
+     * every node on the way is copied at most once and untouched
+     * subtrees are shared.
+     *
+     * @param lo starting point inclusive
+     * @param hi ending point exclusive
+     */
+    private static <T extends Comparable<T>> Tree<T> insertAll(final Tree<T> tree, final List<T> sorted,
+                                                               final int lo, final int hi) {
+        if (lo >= hi) return tree;
+        if (tree instanceof Tip) return Tree.of(sorted, lo, hi - 1);
+        final Branch<T> branch = (Branch<T>) tree;
+        final int index = lowerBound(sorted, lo, hi, branch.value);
+        final boolean found = index < hi && sorted.get(index).compareTo(branch.value) == 0;
+        final Tree<T> newLeft = insertAll(branch.left(), sorted, lo, index);
+        final Tree<T> newRight = insertAll(branch.right(), sorted, found ? index + 1 : index, hi);
+        if (newLeft == branch.left() && newRight == branch.right()) return branch;
+        return of(branch.value, newLeft, newRight);
+    }
+
+    /**
+     * Remove a sorted slice of unique elements in a single descent.
+     *
+     * @param lo starting point inclusive
+     * @param hi ending point exclusive
+     */
+    private static <T extends Comparable<T>> Tree<T> deleteAll(final Tree<T> tree, final List<T> sorted,
+                                                               final int lo, final int hi) {
+        if (lo >= hi || tree instanceof Tip) return tree;
+        final Branch<T> branch = (Branch<T>) tree;
+        final int index = lowerBound(sorted, lo, hi, branch.value);
+        final boolean found = index < hi && sorted.get(index).compareTo(branch.value) == 0;
+        final Tree<T> newLeft = deleteAll(branch.left(), sorted, lo, index);
+        final Tree<T> newRight = deleteAll(branch.right(), sorted, found ? index + 1 : index, hi);
+        if (found) return join(newLeft, newRight);
+        if (newLeft == branch.left() && newRight == branch.right()) return branch;
+        return of(branch.value, newLeft, newRight);
+    }
+
+    /**
+     * Join two trees where all the elements of the left one are smaller
+     * than all the elements of the right one.
+     */
+    private static <T extends Comparable<T>> Tree<T> join(final Tree<T> left, final Tree<T> right) {
+        if (left instanceof Tip) return right;
+        if (right instanceof Tip) return left;
+        Branch<T> min = (Branch<T>) right;
+        while (min.left() instanceof Branch) min = (Branch<T>) min.left();
+        return of(min.value, left, removeMin(right));
+    }
+
+    private static <T extends Comparable<T>> Tree<T> removeMin(final Tree<T> tree) {
+        final Branch<T> branch = (Branch<T>) tree;
+        if (branch.left() instanceof Tip) return branch.right();
+        return of(branch.value, removeMin(branch.left()), branch.right());
+    }
+
+    /**
+     * @return index of the first element in the slice not smaller than the target
+     */
+    private static <T extends Comparable<T>> int lowerBound(final List<T> sorted, int lo, int hi, final T target) {
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (sorted.get(mid).compareTo(target) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Diff two trees in order, skipping the subtrees they share.
+     */
+    private static <T extends Comparable<T>> void diff(final Tree<T> from, final Tree<T> to,
+                                                       final List<T> added, final List<T> removed) {
+        if (from == to) return;
+        if (to instanceof Tip) {
+            from.foreach(removed::add);
+            return;
+        }
+        if (from instanceof Tip) {
+            to.foreach(added::add);
+            return;
+        }
+        final Branch<T> branch = (Branch<T>) from;
+        final Branch<T> other = (Branch<T>) to;
+        if (branch.value.compareTo(other.value) == 0) {
+            diff(branch.left(), other.left(), added, removed);
+            diff(branch.right(), other.right(), added, removed);
+            return;
+        }
+        final Split<T> split = split(other, branch.value);
+        diff(branch.left(), split.left, added, removed);
+        if (!split.found) removed.add(branch.value);
+        diff(branch.right(), split.right, added, removed);
+    }
+
+    /**
+     * Split a tree around an element, the subtrees off the search path
+     * are shared with the original tree.
+     */
+    private static <T extends Comparable<T>> Split<T> split(final Tree<T> tree, final T element) {
+        if (tree instanceof Tip) return new Split<>(tree, false, tree);
+        final Branch<T> branch = (Branch<T>) tree;
+        final int cmp = element.compareTo(branch.value);
+        if (cmp == 0) return new Split<>(branch.left(), true, branch.right());
+        if (cmp < 0) {
+            final Split<T> split = split(branch.left(), element);
+            return new Split<>(split.left, split.found, of(branch.value, split.right, branch.right()));
+        }
+        final Split<T> split = split(branch.right(), element);
+        return new Split<>(of(branch.value, branch.left(), split.left), split.found, split.right);
+    }
+
+    /**
+     * Result of splitting a tree around an element.
+     */
+    private static final class Split<T extends Comparable<T>> {
+        final Tree<T> left;
+        final boolean found;
+        final Tree<T> right;
+
+        Split(final Tree<T> left, final boolean found, final Tree<T> right) {
+            this.left = left;
+            this.found = found;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Spliterator walking the tree in order with an explicit stack,
+     * it splits at subtree boundaries so all the sizes are exact.
+     */
+    private static final class BranchSpliterator<T extends Comparable<T>> implements Spliterator<T> {
+        /**
+         * Subtree to traverse before anything on the stack.
+         */
+        private Tree<T> pending;
+        /**
+         * Ancestors still to visit, each one yields its value then its right subtree.
+         */
+        private final ArrayDeque<Branch<T>> stack;
+        private int remaining;
+
+        BranchSpliterator(final Tree<T> pending, final ArrayDeque<Branch<T>> stack, final int remaining) {
+            this.pending = pending;
+            this.stack = stack;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            if (remaining == 0) return false;
+            while (pending instanceof Branch) {
+                final Branch<T> branch = (Branch<T>) pending;
+                stack.push(branch);
+                pending = branch.left();
+            }
+            final Branch<T> branch = stack.pop();
+            pending = branch.right();
+            --remaining;
+            action.accept(branch.value);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            pending.foreach(action);
+            while (!stack.isEmpty()) {
+                final Branch<T> branch = stack.pop();
+                action.accept(branch.value);
+                branch.right().foreach(action);
+            }
+            pending = Tree.empty();
+            remaining = 0;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (remaining < 2) return null;
+            if (pending instanceof Branch) {
+                final Branch<T> branch = (Branch<T>) pending;
+                stack.push(branch);
+                pending = Tree.empty();
+                if (branch.left() instanceof Branch) {
+                    remaining -= branch.left().size();
+                    return new BranchSpliterator<>(branch.left(), new ArrayDeque<>(), branch.left().size());
+                }
+            }
+            final Branch<T> top = stack.pop();
+            if (!stack.isEmpty()) {
+                final ArrayDeque<Branch<T>> prefix = new ArrayDeque<>();
+                prefix.push(top);
+                remaining -= 1 + top.right().size();
+                return new BranchSpliterator<>(Tree.empty(), prefix, 1 + top.right().size());
+            }
+            pending = top.right();
+            --remaining;
+            return new BranchSpliterator<>(Tree.singleton(top.value), new ArrayDeque<>(), 1);
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null;
+        }
+    }
+
+    /**
+     * Node without children.
+     */
+    static final class Leaf<T extends Comparable<T>> extends Branch<T> {
+        Leaf(final T value) {
+            super(value);
+        }
+
+        @Override
+        Tree<T> left() {
+            return Tip.instance();
+        }
+
+        @Override
+        Tree<T> right() {
+            return Tip.instance();
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+    }
+
+    /**
+     * Node with at least one child.
+     */
+    static final class Full<T extends Comparable<T>> extends Branch<T> {
+        private final Tree<T> left;
+        private final Tree<T> right;
+        private final int size;
+        private final int hash;
+
+        Full(final T value, final Tree<T> left, final Tree<T> right) {
+            super(value);
+            this.left = left;
+            this.right = right;
+            this.size = 1 + left.size() + right.size();
+            this.hash = left.hashCode() + value.hashCode() + right.hashCode();
+        }
+
+        @Override
+        Tree<T> left() {
+            return left;
+        }
+
+        @Override
+        Tree<T> right() {
+            return right;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Node created by a transient editor, it is edited in place as long
+     * as the editor holding the same edit token is alive. Editors add new
+     * elements as {@link Leaf} nodes and only copy a node into an owned
+     * one once one of its children changes.
+     */
+    static final class Owned<T extends Comparable<T>> extends Branch<T> {
+        private final Object edit;
+        private Tree<T> left;
+        private Tree<T> right;
+        private int size;
+        private int hash;
+
+        Owned(final T value, final Tree<T> left, final Tree<T> right, final Object edit) {
+            super(value);
+            this.edit = edit;
+            relink(left, right);
+        }
+
+        @Override
+        Tree<T> left() {
+            return left;
+        }
+
+        @Override
+        Tree<T> right() {
+            return right;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        void relink(final Tree<T> newLeft, final Tree<T> newRight) {
+            this.left = newLeft;
+            this.right = newRight;
+            this.size = 1 + newLeft.size() + newRight.size();
+            this.hash = newLeft.hashCode() + value.hashCode() + newRight.hashCode();
+        }
+    }
+
+    /**
+     * Transient editor updating owned branches in place.
+     */
+    static final class Editor<T extends Comparable<T>> extends TransientTree<T> {
+        Editor(final Tree<T> root) {
+            super(root);
+        }
+
+        @Override
+        public TransientTree<T> add(final T element) {
+            root = addInPlace(root, element, edit());
+            return this;
+        }
+
+        @Override
+        public TransientTree<T> remove(final T element) {
+            root = removeInPlace(root, element, edit());
+            return this;
+        }
     }
 }
@@ -0,0 +1,183 @@
+package edu.immutables.bst;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Interface representing Immutable sorted maps.
+ * <p>
+ * Keys and values are stored inline in the nodes of a balanced binary
+ * tree, so a mapping costs a single node and lookups compare keys
+ * directly. Entries are kept sorted either by the natural ordering of the
+ * keys or by the comparator the map was created with. Null keys and
+ * values are not supported.
+ * </p>
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public interface ImmutableSortedMap<K, V> extends Iterable<Map.Entry<K, V>> {
+
+    /**
+     * Get the value mapped to a key.
+     *
+     * @param key key to look up
+     * @return the value mapped to the key, null if there is none
+     */
+    V get(K key);
+
+    /**
+     * Get the value mapped to a key or a default value.
+     *
+     * @param key key to look up
+     * @param defaultValue value returned if the key is not mapped
+     * @return the value mapped to the key, the default value if there is none
+     */
+    default V getOrDefault(final K key, final V defaultValue) {
+        final V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Test if the map holds a key.
+     *
+     * @param key target key
+     * @return true if the key is mapped, false otherwise
+     */
+    default boolean containsKey(final K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map a key to a value.
+     *
+     * @param key key to map
+     * @param value value to map the key to
+     * @return a new map with the key mapped to the value
+     */
+    ImmutableSortedMap<K, V> put(K key, V value);
+
+    /**
+     * Remove the mapping of a key.
+     *
+     * @param key key to remove
+     * @return a new map without the key
+     */
+    ImmutableSortedMap<K, V> remove(K key);
+
+    /**
+     * Compute a new mapping for a key in a single descent of the tree.
+     *
+     * @param key key to update
+     * @param remapping function computing the new value from the key and its
+     *                  current value, or null if it is not mapped; returning
+     *                  null removes the mapping
+     * @return a new map with the computed mapping
+     */
+    ImmutableSortedMap<K, V> compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping);
+
+    /**
+     * Compute a new value for a key if it is mapped, in a single descent of the tree.
+     *
+     * @param key key to update
+     * @param remapping function computing the new value from the key and its
+     *                  current value; returning null removes the mapping
+     * @return a new map with the computed mapping, this map if the key is not mapped
+     */
+    ImmutableSortedMap<K, V> computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remapping);
+
+    /**
+     * Get the mappings whose keys fall in a range, in ascending key order.
+     * <p>
+     * The scan is lazy: it costs O(log n) to reach the first mapping and
+     * O(1) amortized per mapping consumed.
+     * </p>
+     *
+     * @param from lowest key of the range, inclusive
+     * @param to highest key of the range, exclusive
+     * @return an instance of {@link Stream} holding the mappings in the range
+     */
+    Stream<Map.Entry<K, V>> range(K from, K to);
+
+    /**
+     * Apply an action over the mappings of the map in ascending key order.
+     *
+     * @param consumer action to apply
+     */
+    void foreach(BiConsumer<? super K, ? super V> consumer);
+
+    /**
+     * @return the number of mappings in the map
+     */
+    int size();
+
+    /**
+     * @return true if the map is empty, false otherwise
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the comparator ordering the keys of the map
+     */
+    Comparator<? super K> comparator();
+
+    @Override
+    default Spliterator<Map.Entry<K, V>> spliterator() {
+        return Spliterators.spliterator(iterator(), size(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * @return an instance of {@link Stream} holding the mappings of the map in ascending key order
+     */
+    default Stream<Map.Entry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Get an empty map ordered by the natural ordering of its keys.
+     *
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @return an empty map
+     */
+    static <K extends Comparable<? super K>, V> ImmutableSortedMap<K, V> empty() {
+        return SortedMapTree.empty();
+    }
+
+    /**
+     * Get an empty map ordered by a comparator.
+     *
+     * @param comparator comparator ordering the keys
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @return an empty map
+     */
+    static <K, V> ImmutableSortedMap<K, V> empty(final Comparator<? super K> comparator) {
+        return SortedMapTree.empty(comparator);
+    }
+
+    /**
+     * Factory method to build an ImmutableSortedMap from a given map.
+     *
+     * @param map map to build from
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @return a new ImmutableSortedMap with the mappings of the given map
+     */
+    static <K extends Comparable<? super K>, V> ImmutableSortedMap<K, V> of(final Map<? extends K, ? extends V> map) {
+        ImmutableSortedMap<K, V> result = empty();
+        for (final Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,208 @@
+package edu.immutables.bst;
+
+import edu.immutables.bst.BPlusNodes.Leaf;
+import edu.immutables.bst.BPlusNodes.Node;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Persistent sorted set of {@code int} keys.
+ * <p>
+ * Same nodes as {@link BPlusTree} but keys are held in {@code int[]}
+ * arrays, so {@code add}, {@code remove} and {@code contains} neither
+ * box their argument nor go through {@code compareTo}. The node
+ * algorithms are shared with the other B+trees through {@link BPlusNodes}.
+ * </p>
+ */
+public final class IntTree extends PrimitiveTree<int[], IntTree> {
+    private static final BPlusNodes<int[]> NODES = BPlusNodes.INTS;
+
+    private IntTree(final Node<int[]> root, final int size, final int order) {
+        super(root, size, order);
+    }
+
+    @Override
+    BPlusNodes<int[]> nodes() {
+        return NODES;
+    }
+
+    @Override
+    IntTree withRoot(final Node<int[]> root, final int size) {
+        return new IntTree(root, size, order);
+    }
+
+    /**
+     * Add a new key to the tree.
+     *
+     * @param key key to add
+     * @return a new tree with the key added
+     */
+    public IntTree add(final int key) {
+        return insert(new Probe(key));
+    }
+
+    /**
+     * Remove a key from the tree.
+     *
+     * @param key key to remove
+     * @return a new tree with the key removed
+     */
+    public IntTree remove(final int key) {
+        return delete(new Probe(key));
+    }
+
+    /**
+     * Test if the current tree contains the target key.
+     *
+     * @param key target key
+     * @return true if the tree contains the key, false otherwise
+     */
+    public boolean contains(final int key) {
+        return lookup(new Probe(key));
+    }
+
+    /**
+     * Apply an action over the keys of the tree in ascending order.
+     *
+     * @param consumer action to apply
+     */
+    public void foreach(final IntConsumer consumer) {
+        BPlusNodes.foreachLeaf(root, keys -> {
+            for (final int key : keys) consumer.accept(key);
+        });
+    }
+
+    /**
+     * @return iterator over the keys in ascending order
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new Itr();
+    }
+
+    /**
+     * @return sequential stream of the keys in ascending order
+     */
+    public IntStream stream() {
+        return StreamSupport.intStream(Spliterators.spliterator(iterator(), size,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+                        | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    @Override
+    public int hashCode() {
+        final int[] hash = {0};
+        foreach(key -> hash[0] += key);
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        final StringJoiner joiner = new StringJoiner(" ");
+        foreach(key -> joiner.add(Integer.toString(key)));
+        return joiner.toString();
+    }
+
+    /**
+     * Return an empty tree.
+     *
+     * @return an empty tree
+     */
+    public static IntTree empty() {
+        return empty(DEFAULT_ORDER);
+    }
+
+    static IntTree empty(final int order) {
+        checkOrder(order);
+        return new IntTree(NODES.emptyLeaf, 0, order);
+    }
+
+    /**
+     * Factory method to build a tree from multiple keys.
+     * <p>
+     * The given array is not modified.
+     * </p>
+     *
+     * @param keys keys to build from
+     * @return tree of the given keys
+     */
+    public static IntTree of(final int... keys) {
+        return of(keys, DEFAULT_ORDER);
+    }
+
+    static IntTree of(final int[] keys, final int order) {
+        final int[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < sorted.length; ++i) {
+            if (unique > 0 && sorted[i] == sorted[unique - 1]) continue;
+            sorted[unique++] = sorted[i];
+        }
+        return new IntTree(NODES.build(sorted, unique, order), unique, order);
+    }
+
+    /**
+     * Factory method to build a tree from a stream of keys.
+     *
+     * @param keys keys to build from
+     * @return tree of the given keys
+     */
+    public static IntTree of(final IntStream keys) {
+        return of(keys.toArray());
+    }
+
+    /**
+     * Key looked up without boxing.
+     */
+    private static final class Probe implements BPlusNodes.Probe<int[]> {
+        private final int key;
+
+        Probe(final int key) {
+            this.key = key;
+        }
+
+        @Override
+        public int search(final int[] keys) {
+            return Arrays.binarySearch(keys, key);
+        }
+
+        @Override
+        public int[] insert(final int[] keys, final int index) {
+            final int[] result = new int[keys.length + 1];
+            System.arraycopy(keys, 0, result, 0, index);
+            result[index] = key;
+            System.arraycopy(keys, index, result, index + 1, keys.length - index);
+            return result;
+        }
+    }
+
+    private final class Itr implements PrimitiveIterator.OfInt {
+        private final BPlusNodes.Leaves<int[]> leaves = new BPlusNodes.Leaves<>(root);
+        private int[] keys = NODES.emptyLeaf.keys;
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+            while (index == keys.length) {
+                final Leaf<int[]> leaf = leaves.next();
+                if (leaf == null) return false;
+                keys = leaf.keys;
+                index = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return keys[index++];
+        }
+    }
+}
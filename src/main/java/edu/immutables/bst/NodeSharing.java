@@ -0,0 +1,100 @@
+package edu.immutables.bst;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Count of the nodes held by a group of trees and of the nodes
+ * shared between more than one of them.
+ * <p>
+ * Empty tips are not counted. Every node is visited once no matter
+ * how many trees share it, so counting is proportional to the number
+ * of distinct nodes rather than the sum of the tree sizes.
+ * </p>
+ */
+public final class NodeSharing {
+    private final long distinctNodes;
+    private final long sharedNodes;
+
+    private NodeSharing(final long distinctNodes, final long sharedNodes) {
+        this.distinctNodes = distinctNodes;
+        this.sharedNodes = sharedNodes;
+    }
+
+    /**
+     * @return number of distinct nodes reachable from any of the trees
+     */
+    public long distinctNodes() {
+        return distinctNodes;
+    }
+
+    /**
+     * @return number of distinct nodes reachable from more than one of the trees
+     */
+    public long sharedNodes() {
+        return sharedNodes;
+    }
+
+    /**
+     * Count the nodes of a group of trees.
+     *
+     * @param trees trees to count, implementations other than the binary
+     *              tree and the B+tree are ignored
+     * @return node counts of the given trees
+     */
+    public static NodeSharing of(final Iterable<? extends Tree<?>> trees) {
+        final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<Object> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        final ArrayDeque<Object> stack = new ArrayDeque<>();
+        for (final Tree<?> tree : trees) {
+            push(stack, root(tree));
+            while (!stack.isEmpty()) {
+                final Object node = stack.pop();
+                if (seen.add(node)) {
+                    pushChildren(stack, node);
+                } else {
+                    markShared(node, shared);
+                }
+            }
+        }
+        return new NodeSharing(seen.size(), shared.size());
+    }
+
+    /**
+     * Mark a node seen by an earlier tree and its whole subtree as shared.
+     */
+    private static void markShared(final Object node, final Set<Object> shared) {
+        final ArrayDeque<Object> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            final Object next = stack.pop();
+            if (shared.add(next)) pushChildren(stack, next);
+        }
+    }
+
+    private static Object root(final Tree<?> tree) {
+        if (tree instanceof BPlusTree) return ((BPlusTree<?>) tree).root();
+        if (tree instanceof Branch) return tree;
+        return null;
+    }
+
+    private static void pushChildren(final ArrayDeque<Object> stack, final Object node) {
+        if (node instanceof Branch) {
+            push(stack, ((Branch<?>) node).left());
+            push(stack, ((Branch<?>) node).right());
+        } else if (node instanceof BPlusNodes.Inner) {
+            for (final Object child : ((BPlusNodes.Inner<?>) node).children) push(stack, child);
+        }
+    }
+
+    private static void push(final ArrayDeque<Object> stack, final Object node) {
+        if (node instanceof Branch || node instanceof BPlusNodes.Node) stack.push(node);
+    }
+
+    @Override
+    public String toString() {
+        return "NodeSharing{distinct=" + distinctNodes + ", shared=" + sharedNodes + "}";
+    }
+}
@@ -0,0 +1,101 @@
+package edu.immutables.bst;
+
+import edu.immutables.bst.BPlusNodes.Leaf;
+import edu.immutables.bst.BPlusNodes.Node;
+import edu.immutables.bst.BPlusNodes.Probe;
+
+import java.util.Objects;
+
+/**
+ * Common part of the B+trees of primitive keys.
+ * <p>
+ * {@link IntTree} and {@link LongTree} only provide the typed entry points,
+ * a {@link Probe} for their key type, iteration, hashing and printing.
+ * Holding the root, updating it and comparing the keys is done here.
+ * </p>
+ *
+ * @param <A> type of the key arrays
+ * @param <T> type of the tree
+ */
+abstract class PrimitiveTree<A, T extends PrimitiveTree<A, T>> {
+    /**
+     * Default maximum number of keys per leaf and children per inner node.
+     */
+    static final int DEFAULT_ORDER = 64;
+
+    final Node<A> root;
+    final int size;
+    final int order;
+
+    PrimitiveTree(final Node<A> root, final int size, final int order) {
+        this.root = root;
+        this.size = size;
+        this.order = order;
+    }
+
+    /**
+     * @return node algorithms for the key type of the tree
+     */
+    abstract BPlusNodes<A> nodes();
+
+    /**
+     * @return a tree of the same type and order with the given root
+     */
+    abstract T withRoot(Node<A> root, int size);
+
+    @SuppressWarnings("unchecked")
+    final T insert(final Probe<A> probe) {
+        final Node<A> newRoot = nodes().add(root, probe, order);
+        return newRoot == root ? (T) this : withRoot(newRoot, size + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    final T delete(final Probe<A> probe) {
+        final Node<A> newRoot = nodes().remove(root, probe, order);
+        return newRoot == root ? (T) this : withRoot(newRoot, size - 1);
+    }
+
+    final boolean lookup(final Probe<A> probe) {
+        return probe.search(BPlusNodes.leaf(root, probe).keys) >= 0;
+    }
+
+    /**
+     * @return the size of the current tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the tree is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return array of the keys in ascending order
+     */
+    public A toArray() {
+        final A result = nodes().newArray(size);
+        final BPlusNodes.Leaves<A> leaves = new BPlusNodes.Leaves<>(root);
+        int offset = 0;
+        for (Leaf<A> leaf = leaves.next(); leaf != null; leaf = leaves.next()) {
+            System.arraycopy(leaf.keys, 0, result, offset, leaf.width);
+            offset += leaf.width;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final PrimitiveTree<?, ?> other = (PrimitiveTree<?, ?>) o;
+        return size == other.size && Objects.deepEquals(toArray(), other.toArray());
+    }
+
+    static void checkOrder(final int order) {
+        if (order < 4) throw new IllegalArgumentException("Order must be at least 4: " + order);
+    }
+}
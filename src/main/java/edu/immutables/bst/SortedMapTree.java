@@ -0,0 +1,345 @@
+package edu.immutables.bst;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Persistent sorted map on a weight balanced binary tree.
+ * <p>
+ * Every node holds a key, its value and the size of its subtree, empty
+ * subtrees are null. The size doubles as the balance criterion: a subtree
+ * is never more than {@link #DELTA} times larger than its sibling, which
+ * keeps the height logarithmic. Updates copy the path from the root to
+ * the changed node and rebalance it with single or double rotations on
+ * the way back up.
+ * </p>
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+final class SortedMapTree<K, V> implements ImmutableSortedMap<K, V> {
+    /**
+     * Maximum ratio between the sizes of two sibling subtrees.
+     */
+    private static final int DELTA = 3;
+    /**
+     * Ratio between the inner and outer grandchildren above which a double rotation is needed.
+     */
+    private static final int RATIO = 2;
+    private static final SortedMapTree<?, ?> EMPTY = new SortedMapTree<>(null, Comparator.naturalOrder());
+
+    private final Node<K, V> root;
+    private final Comparator<? super K> comparator;
+
+    private SortedMapTree(final Node<K, V> root, final Comparator<? super K> comparator) {
+        this.root = root;
+        this.comparator = comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> SortedMapTree<K, V> empty() {
+        return (SortedMapTree<K, V>) EMPTY;
+    }
+
+    static <K, V> SortedMapTree<K, V> empty(final Comparator<? super K> comparator) {
+        return new SortedMapTree<>(null, Objects.requireNonNull(comparator));
+    }
+
+    @Override
+    public V get(final K key) {
+        Objects.requireNonNull(key, "Null keys are not supported");
+        Node<K, V> node = root;
+        while (node != null) {
+            final int cmp = comparator.compare(key, node.key);
+            if (cmp == 0) return node.value;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    @Override
+    public ImmutableSortedMap<K, V> put(final K key, final V value) {
+        Objects.requireNonNull(value, "Null values are not supported");
+        return compute(key, (k, v) -> value);
+    }
+
+    @Override
+    public ImmutableSortedMap<K, V> remove(final K key) {
+        return computeIfPresent(key, (k, v) -> null);
+    }
+
+    @Override
+    public ImmutableSortedMap<K, V> compute(final K key,
+                                           final BiFunction<? super K, ? super V, ? extends V> remapping) {
+        return withRoot(compute(root, Objects.requireNonNull(key, "Null keys are not supported"), remapping, false));
+    }
+
+    @Override
+    public ImmutableSortedMap<K, V> computeIfPresent(final K key,
+                                                    final BiFunction<? super K, ? super V, ? extends V> remapping) {
+        return withRoot(compute(root, Objects.requireNonNull(key, "Null keys are not supported"), remapping, true));
+    }
+
+    private SortedMapTree<K, V> withRoot(final Node<K, V> updated) {
+        return updated == root ? this : new SortedMapTree<>(updated, comparator);
+    }
+
+    private Node<K, V> compute(final Node<K, V> node, final K key,
+                               final BiFunction<? super K, ? super V, ? extends V> remapping,
+                               final boolean ifPresent) {
+        if (node == null) {
+            if (ifPresent) return null;
+            final V value = remapping.apply(key, null);
+            return value == null ? null : new Node<>(key, value, null, null);
+        }
+        final int cmp = comparator.compare(key, node.key);
+        if (cmp < 0) {
+            final Node<K, V> left = compute(node.left, key, remapping, ifPresent);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        if (cmp > 0) {
+            final Node<K, V> right = compute(node.right, key, remapping, ifPresent);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        final V value = remapping.apply(node.key, node.value);
+        if (value == null) return glue(node.left, node.right);
+        return value == node.value ? node : new Node<>(node.key, value, node.left, node.right);
+    }
+
+    private static int size(final Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Build a node from subtrees that were balanced before a single
+     * insertion or removal on one of them, restoring the balance.
+     */
+    private static <K, V> Node<K, V> balance(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+        final int leftSize = size(left);
+        final int rightSize = size(right);
+        if (leftSize + rightSize <= 1) return new Node<>(key, value, left, right);
+        if (rightSize > DELTA * leftSize) {
+            if (size(right.left) < RATIO * size(right.right)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            final Node<K, V> inner = right.left;
+            return new Node<>(inner.key, inner.value,
+                    new Node<>(key, value, left, inner.left),
+                    new Node<>(right.key, right.value, inner.right, right.right));
+        }
+        if (leftSize > DELTA * rightSize) {
+            if (size(left.right) < RATIO * size(left.left)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            final Node<K, V> inner = left.right;
+            return new Node<>(inner.key, inner.value,
+                    new Node<>(left.key, left.value, left.left, inner.left),
+                    new Node<>(key, value, inner.right, right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    /**
+     * Join the two subtrees of a removed node, promoting the closest key of the larger one.
+     */
+    private static <K, V> Node<K, V> glue(final Node<K, V> left, final Node<K, V> right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.size > right.size) {
+            Node<K, V> max = left;
+            while (max.right != null) max = max.right;
+            return balance(max.key, max.value, removeMax(left), right);
+        }
+        Node<K, V> min = right;
+        while (min.left != null) min = min.left;
+        return balance(min.key, min.value, left, removeMin(right));
+    }
+
+    private static <K, V> Node<K, V> removeMin(final Node<K, V> node) {
+        if (node.left == null) return node.right;
+        return balance(node.key, node.value, removeMin(node.left), node.right);
+    }
+
+    private static <K, V> Node<K, V> removeMax(final Node<K, V> node) {
+        if (node.right == null) return node.left;
+        return balance(node.key, node.value, node.left, removeMax(node.right));
+    }
+
+    @Override
+    public Stream<Map.Entry<K, V>> range(final K from, final K to) {
+        final Iterator<Map.Entry<K, V>> iterator = new Cursor<>(root, comparator,
+                Objects.requireNonNull(from), Objects.requireNonNull(to));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    @Override
+    public void foreach(final BiConsumer<? super K, ? super V> consumer) {
+        foreach(root, consumer);
+    }
+
+    private static <K, V> void foreach(final Node<K, V> node, final BiConsumer<? super K, ? super V> consumer) {
+        if (node == null) return;
+        foreach(node.left, consumer);
+        consumer.accept(node.key, node.value);
+        foreach(node.right, consumer);
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Cursor<>(root, comparator, null, null);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    Node<K, V> root() {
+        return root;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImmutableSortedMap)) return false;
+        final ImmutableSortedMap<K, Object> other = (ImmutableSortedMap<K, Object>) o;
+        if (size() != other.size()) return false;
+        for (final Map.Entry<K, V> entry : this) {
+            if (!entry.getValue().equals(other.get(entry.getKey()))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (final Map.Entry<K, V> entry : this) hash += entry.hashCode();
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        for (final Map.Entry<K, V> entry : this) {
+            if (builder.length() > 1) builder.append(", ");
+            builder.append(entry);
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Node of the tree, it doubles as the entry handed out by iteration
+     * so scanning the map allocates no entry objects.
+     */
+    static final class Node<K, V> implements Map.Entry<K, V> {
+        final K key;
+        final V value;
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int size;
+
+        Node(final K key, final V value, final Node<K, V> left, final Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + 1 + size(right);
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(final V value) {
+            throw new UnsupportedOperationException("Immutable entry");
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && value.equals(entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * In order iterator over the keys in [from, to), null bounds are open.
+     * The stack holds the nodes whose left subtree is being visited, so it
+     * never grows beyond the height of the tree.
+     */
+    private static final class Cursor<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final ArrayDeque<Node<K, V>> stack = new ArrayDeque<>();
+        private final Comparator<? super K> comparator;
+        private final K to;
+
+        Cursor(final Node<K, V> root, final Comparator<? super K> comparator, final K from, final K to) {
+            this.comparator = comparator;
+            this.to = to;
+            for (Node<K, V> node = root; node != null; ) {
+                if (from != null && comparator.compare(node.key, from) < 0) {
+                    node = node.right;
+                } else {
+                    stack.push(node);
+                    node = node.left;
+                }
+            }
+            trim();
+        }
+
+        private void pushLeft(Node<K, V> node) {
+            for (; node != null; node = node.left) stack.push(node);
+            trim();
+        }
+
+        private void trim() {
+            if (to != null && !stack.isEmpty() && comparator.compare(stack.peek().key, to) >= 0) stack.clear();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (stack.isEmpty()) throw new NoSuchElementException();
+            final Node<K, V> node = stack.pop();
+            pushLeft(node.right);
+            return node;
+        }
+    }
+}
@@ -1,21 +1,39 @@
 package edu.immutables.bst;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Representation of empty tree.
+ * <p>
+ * Holding no state, a single instance is shared by every tree.
+ * </p>
  *
  * @param <T> type of the empty tree
  * @author tarek-nawara
  */
 class Tip<T extends Comparable<T>> implements Tree<T> {
+    @SuppressWarnings("rawtypes")
+    private static final Tip INSTANCE = new Tip();
+
+    private Tip() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Comparable<T>> Tip<T> instance() {
+        return INSTANCE;
+    }
+
     @Override
     public Tree<T> add(T element) {
-        return new Branch<>(element, Tree.empty(), Tree.empty());
+        return new Branch.Leaf<>(element);
     }
 
     @Override
@@ -23,14 +41,45 @@ class Tip<T extends Comparable<T>> implements Tree<T> {
         return this;
     }
 
+    @Override
+    public Tree<T> addAll(Iterable<? extends T> elements) {
+        final List<T> batch = Branch.sortedBatch(elements);
+        return Tree.of(batch, 0, batch.size() - 1);
+    }
+
+    @Override
+    public Tree<T> addAllSorted(Stream<? extends T> sorted) {
+        return Tree.ofSorted(sorted);
+    }
+
+    @Override
+    public Tree<T> removeAll(Iterable<? extends T> elements) {
+        return this;
+    }
+
+    @Override
+    public Tree<T> removeAllSorted(Stream<? extends T> sorted) {
+        return this;
+    }
+
+    @Override
+    public TransientTree<T> asTransient() {
+        return new Branch.Editor<>(this);
+    }
+
     @Override
     public <U extends Comparable<U>> Tree<U> map(Function<? super T, ? extends U> f) {
-        return new Tip<>();
+        return instance();
+    }
+
+    @Override
+    public <U extends Comparable<U>> Tree<U> mapMonotonic(Function<? super T, ? extends U> f) {
+        return instance();
     }
 
     @Override
     public <U extends Comparable<U>> Tree<U> flatMap(Function<? super T, ? extends Tree<U>> f) {
-        return new Tip<>();
+        return instance();
     }
 
     @Override
@@ -47,6 +96,11 @@ class Tip<T extends Comparable<T>> implements Tree<T> {
         return 0;
     }
 
+    @Override
+    public Comparator<? super T> comparator() {
+        return Comparator.naturalOrder();
+    }
+
     @Override
     public Tree<T> union(Tree<T> other) {
         return other;
@@ -62,6 +116,22 @@ class Tip<T extends Comparable<T>> implements Tree<T> {
         return new ArrayList<T>().iterator();
     }
 
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(new Object[0], Spliterator.ORDERED | Spliterator.SORTED
+                | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof Tip;
+    }
+
+    @Override
+    public int hashCode() {
+        return 0;
+    }
+
     @Override
     public String toString() {
         return "";
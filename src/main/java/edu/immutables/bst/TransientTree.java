@@ -0,0 +1,118 @@
+package edu.immutables.bst;
+
+/**
+ * Editor for building a new version of a tree through many updates.
+ * <p>
+ * Nodes created by the editor are owned by it and get updated in place,
+ * so a batch of updates allocates each node at most once instead of a
+ * fresh path for every update. Nodes shared with the original tree are
+ * copied before being changed, so the original tree is never affected.
+ * </p>
+ * <p>
+ * The editor is not thread safe. After {@link #persistent()} is called it
+ * cannot be used anymore and the nodes it owned become immutable.
+ * </p>
+ *
+ * @param <T> type of elements held by the tree
+ */
+public class TransientTree<T> {
+    Tree<T> root;
+    private Object edit;
+
+    TransientTree(final Tree<T> root) {
+        this.root = root;
+        this.edit = new Object();
+    }
+
+    /**
+     * Add a new element to the tree.
+     *
+     * @param element element to add
+     * @return this editor
+     * @throws IllegalStateException if {@link #persistent()} was already called
+     */
+    public TransientTree<T> add(final T element) {
+        ensureEditable();
+        root = root.add(element);
+        return this;
+    }
+
+    /**
+     * Remove element from the tree.
+     *
+     * @param element element to remove
+     * @return this editor
+     * @throws IllegalStateException if {@link #persistent()} was already called
+     */
+    public TransientTree<T> remove(final T element) {
+        ensureEditable();
+        root = root.remove(element);
+        return this;
+    }
+
+    /**
+     * Add all the given elements to the tree.
+     *
+     * @param elements elements to add
+     * @return this editor
+     * @throws IllegalStateException if {@link #persistent()} was already called
+     */
+    public TransientTree<T> addAll(final Iterable<? extends T> elements) {
+        for (final T element : elements) add(element);
+        return this;
+    }
+
+    /**
+     * Test if the tree contains the target element.
+     *
+     * @param element target element
+     * @return true if the tree contains the element, false otherwise
+     * @throws IllegalStateException if {@link #persistent()} was already called
+     */
+    public boolean contains(final T element) {
+        ensureEditable();
+        return root.contains(element);
+    }
+
+    /**
+     * @return the size of the tree
+     * @throws IllegalStateException if {@link #persistent()} was already called
+     */
+    public int size() {
+        ensureEditable();
+        return root.size();
+    }
+
+    /**
+     * Freeze the edited tree in O(1).
+     * <p>
+     * Dropping the edit token is enough, no later editor can own the
+     * nodes so they are never written again. Nodes written in place do not
+     * have final fields though: hand the returned tree to other threads
+     * through a happens-before edge, such as a volatile field, a lock,
+     * an executor or {@link edu.immutables.concurrent.AtomicPersistentRef},
+     * rather than through a data race.
+     * </p>
+     *
+     * @return the edited tree
+     * @throws IllegalStateException if {@link #persistent()} was already called
+     */
+    public Tree<T> persistent() {
+        ensureEditable();
+        edit = null;
+        return root;
+    }
+
+    /**
+     * @return token identifying the nodes owned by this editor
+     * @throws IllegalStateException if {@link #persistent()} was already called
+     */
+    Object edit() {
+        ensureEditable();
+        return edit;
+    }
+
+    private void ensureEditable() {
+        if (edit == null) throw new IllegalStateException("Transient tree used after persistent() call");
+    }
+}
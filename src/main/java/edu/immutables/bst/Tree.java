@@ -3,17 +3,27 @@ package edu.immutables.bst;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Interface representing Immutable Trees.
+ * <p>
+ * Elements are kept sorted either by their natural ordering or by
+ * the comparator the tree was created with.
+ * </p>
  *
  * @param <T> type of elements held by the tree
  * @author tarek-nawara
  */
-public interface Tree<T extends Comparable<T>> extends Iterable<T> {
+public interface Tree<T> extends Iterable<T> {
 
     /**
      * Add a new element to the tree.
@@ -31,6 +41,70 @@ public interface Tree<T extends Comparable<T>> extends Iterable<T> {
      */
     Tree<T> remove(T element);
 
+    /**
+     * Add a batch of elements to the tree.
+     * <p>
+     * Implementations may sort the batch and apply it in a single pass
+     * instead of copying a path for every element.
+     * </p>
+     *
+     * @param elements elements to add
+     * @return a new tree with the elements added
+     */
+    default Tree<T> addAll(Iterable<? extends T> elements) {
+        Tree<T> result = this;
+        for (final T element : elements) result = result.add(element);
+        return result;
+    }
+
+    /**
+     * Add a batch of elements that are already sorted by the tree comparator.
+     *
+     * @param sorted stream of elements in ascending order
+     * @return a new tree with the elements added
+     * @throws IllegalArgumentException if the elements are not sorted
+     */
+    default Tree<T> addAllSorted(Stream<? extends T> sorted) {
+        return addAll(getSortedUniqueElements(sorted.iterator(), comparator()));
+    }
+
+    /**
+     * Remove a batch of elements from the tree.
+     *
+     * @param elements elements to remove
+     * @return a new tree with the elements removed
+     * @see #addAll(Iterable)
+     */
+    default Tree<T> removeAll(Iterable<? extends T> elements) {
+        Tree<T> result = this;
+        for (final T element : elements) result = result.remove(element);
+        return result;
+    }
+
+    /**
+     * Remove a batch of elements that are already sorted by the tree comparator.
+     *
+     * @param sorted stream of elements in ascending order
+     * @return a new tree with the elements removed
+     * @throws IllegalArgumentException if the elements are not sorted
+     */
+    default Tree<T> removeAllSorted(Stream<? extends T> sorted) {
+        return removeAll(getSortedUniqueElements(sorted.iterator(), comparator()));
+    }
+
+    /**
+     * Start editing a new version of this tree in place.
+     * <p>
+     * This tree is not affected by the edits, the new version is
+     * returned by {@link TransientTree#persistent()}.
+     * </p>
+     *
+     * @return editor initialized with the elements of this tree
+     */
+    default TransientTree<T> asTransient() {
+        return new TransientTree<>(this);
+    }
+
     /**
      * Apply a transformation function over the tree.
      *
@@ -40,6 +114,22 @@ public interface Tree<T extends Comparable<T>> extends Iterable<T> {
      */
     <U extends Comparable<U>> Tree<U> map(Function<? super T, ? extends U> f);
 
+    /**
+     * Apply an order preserving transformation function over the tree.
+     * <p>
+     * The new tree has exactly the same shape as this one, so it is built
+     * in O(n) without any comparisons. The caller is responsible for
+     * {@code f} being strictly increasing, i.e. {@code a < b} implies
+     * {@code f(a) < f(b)}, otherwise the resulting tree is not a valid
+     * search tree.
+     * </p>
+     *
+     * @param f strictly increasing transformation function
+     * @param <U> type of the new elements
+     * @return a new tree with the mapped elements
+     */
+    <U extends Comparable<U>> Tree<U> mapMonotonic(Function<? super T, ? extends U> f);
+
     /**
      * Apply a transformation function over the tree
      * then fusing it.
@@ -84,6 +174,26 @@ public interface Tree<T extends Comparable<T>> extends Iterable<T> {
         return !isEmpty();
     }
 
+    /**
+     * @return comparator used to order the elements of the tree
+     */
+    Comparator<? super T> comparator();
+
+    /**
+     * Find the elements that changed between this tree and a newer version of it.
+     * <p>
+     * Implementations may skip the subtrees shared by both versions, so that
+     * the cost is proportional to the size of the change rather than the size
+     * of the trees.
+     * </p>
+     *
+     * @param other newer version of the tree
+     * @return elements added to and removed from this tree to get the other one
+     */
+    default TreeDiff<T> diff(Tree<T> other) {
+        return TreeDiff.merge(this, other);
+    }
+
     /**
      * Union two trees.
      *
@@ -93,6 +203,35 @@ public interface Tree<T extends Comparable<T>> extends Iterable<T> {
      */
     Tree<T> union(Tree<T> other);
 
+    /**
+     * Create a spliterator over the elements of the tree in ascending order.
+     * <p>
+     * Implementations split at subtree boundaries and report exact sizes,
+     * so parallel streams over large trees scale without materializing them.
+     * </p>
+     *
+     * @return spliterator over the elements of the tree
+     */
+    @Override
+    default Spliterator<T> spliterator() {
+        return Spliterators.spliterator(iterator(), size(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * @return sequential stream of the elements in ascending order
+     */
+    default Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return possibly parallel stream of the elements in ascending order
+     */
+    default Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     /**
      * Convert the given tree to a list.
      *
@@ -102,6 +241,9 @@ public interface Tree<T extends Comparable<T>> extends Iterable<T> {
 
     /**
      * Factory method to build a tree from a list.
+     * <p>
+     * The given list is not modified.
+     * </p>
      *
      * @param list list to build from
      * @param <T> type of elements held by the list
@@ -114,21 +256,61 @@ public interface Tree<T extends Comparable<T>> extends Iterable<T> {
 
     /**
      * Return only unique elements from a given list.
+     * <p>
+     * The given list is not modified, two elements are considered
+     * duplicates if {@code compareTo} returns 0 for them.
+     * </p>
      *
      * @param list target list
      * @param <T> type of elements in the list
-     * @return list containing unique elements
+     * @return sorted list containing unique elements
      */
     static <T extends Comparable<T>> List<T> getUniqueElements(final List<T> list) {
-        if (list.isEmpty()) return list;
-        Collections.sort(list);
-        final List<T> uniqueElementsList = new ArrayList<>();
-        uniqueElementsList.add(list.get(0));
-        for (int i = 1; i < list.size(); ++i) {
-            if (uniqueElementsList.get(uniqueElementsList.size() - 1) == list.get(i)) continue;
-            uniqueElementsList.add(list.get(i));
+        final List<T> sortedList = new ArrayList<>(list);
+        Collections.sort(sortedList);
+        return removeAdjacentDuplicates(sortedList);
+    }
+
+    /**
+     * Collect elements that are already sorted, dropping adjacent duplicates.
+     *
+     * @param sorted iterator over elements in ascending order
+     * @param comparator comparator the elements are sorted by
+     * @param <T> type of elements
+     * @return sorted list containing unique elements
+     * @throws IllegalArgumentException if the elements are not sorted
+     */
+    static <T> List<T> getSortedUniqueElements(final Iterator<? extends T> sorted,
+                                               final Comparator<? super T> comparator) {
+        final List<T> list = new ArrayList<>();
+        while (sorted.hasNext()) {
+            final T element = sorted.next();
+            if (!list.isEmpty()) {
+                final int cmp = comparator.compare(element, list.get(list.size() - 1));
+                if (cmp < 0) throw new IllegalArgumentException("Elements are not sorted: " + element);
+                if (cmp == 0) continue;
+            }
+            list.add(element);
         }
-        return uniqueElementsList;
+        return list;
+    }
+
+    /**
+     * Remove adjacent duplicates from an already sorted list.
+     *
+     * @param sortedList sorted list, it might get modified
+     * @param <T> type of elements in the list
+     * @return sorted list containing unique elements
+     */
+    static <T extends Comparable<T>> List<T> removeAdjacentDuplicates(final List<T> sortedList) {
+        if (sortedList.isEmpty()) return sortedList;
+        int last = 0;
+        for (int i = 1; i < sortedList.size(); ++i) {
+            final T element = sortedList.get(i);
+            if (element.compareTo(sortedList.get(last)) == 0) continue;
+            sortedList.set(++last, element);
+        }
+        return sortedList.subList(0, last + 1);
     }
 
     /**
@@ -143,9 +325,40 @@ public interface Tree<T extends Comparable<T>> extends Iterable<T> {
     static <T extends Comparable<T>> Tree<T> of(final List<T> list,
                                                 final int lo,
                                                 final int hi) {
-        if (lo > hi) return new Tip<>();
+        if (lo > hi) return Tip.instance();
         int mid = (lo + hi) >>> 1;
-        return new Branch<>(list.get(mid), of(list, lo, mid - 1), of(list, mid + 1, hi));
+        return Branch.of(list.get(mid), of(list, lo, mid - 1), of(list, mid + 1, hi));
+    }
+
+    /**
+     * Build a balanced tree from elements that are already sorted.
+     * <p>
+     * Running time of this operation is O(n), the recursion depth
+     * is O(log n) so it is safe for arbitrarily large inputs.
+     * Adjacent duplicates are dropped.
+     * </p>
+     *
+     * @param sorted iterator over elements in ascending order
+     * @param <T> type of elements
+     * @return a new balanced tree of the given elements
+     * @throws IllegalArgumentException if the elements are not sorted
+     */
+    static <T extends Comparable<T>> Tree<T> ofSorted(final Iterator<? extends T> sorted) {
+        final List<T> list = getSortedUniqueElements(sorted, Comparator.naturalOrder());
+        return of(list, 0, list.size() - 1);
+    }
+
+    /**
+     * Build a balanced tree from a stream of elements that are already sorted.
+     *
+     * @param sorted stream of elements in ascending order
+     * @param <T> type of elements
+     * @return a new balanced tree of the given elements
+     * @throws IllegalArgumentException if the elements are not sorted
+     * @see #ofSorted(Iterator)
+     */
+    static <T extends Comparable<T>> Tree<T> ofSorted(final Stream<? extends T> sorted) {
+        return ofSorted(sorted.iterator());
     }
 
     /**
@@ -164,10 +377,10 @@ public interface Tree<T extends Comparable<T>> extends Iterable<T> {
      * Return an empty instance of the tree.
      *
      * @param <T> type of the returned tree
-     * @return a new instance of tree
+     * @return the shared empty tree
      */
     static <T extends Comparable<T>> Tree<T> empty() {
-        return new Tip<>();
+        return Tip.instance();
     }
 
     /**
@@ -178,6 +391,32 @@ public interface Tree<T extends Comparable<T>> extends Iterable<T> {
      * @return a new tree containing that element
      */
     static <T extends Comparable<T>> Tree<T> singleton(final T element) {
-        return new Branch<>(element, new Tip<>(), new Tip<>());
+        return new Branch.Leaf<>(element);
+    }
+
+    /**
+     * Return an empty tree ordered by a given comparator.
+     *
+     * @param comparator comparator used to order the elements
+     * @param <T> type of the returned tree
+     * @return a new empty tree using the given comparator
+     */
+    static <T> Tree<T> empty(final Comparator<? super T> comparator) {
+        return BPlusTree.empty(comparator);
+    }
+
+    /**
+     * Factory method to build a tree ordered by a given comparator from a list.
+     * <p>
+     * The given list is not modified.
+     * </p>
+     *
+     * @param comparator comparator used to order the elements
+     * @param list list to build from
+     * @param <T> type of elements held by the list
+     * @return a new tree of the elements of the list
+     */
+    static <T> Tree<T> of(final Comparator<? super T> comparator, final List<T> list) {
+        return BPlusTree.of(comparator, list);
     }
 }
@@ -0,0 +1,109 @@
+package edu.immutables.bst;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Difference between two versions of a tree.
+ *
+ * @param <T> type of elements held by the trees
+ */
+public final class TreeDiff<T> {
+    private final List<T> added;
+    private final List<T> removed;
+
+    TreeDiff(final List<T> added, final List<T> removed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * @return elements found only in the newer version, in ascending order
+     */
+    public List<T> added() {
+        return added;
+    }
+
+    /**
+     * @return elements found only in the older version, in ascending order
+     */
+    public List<T> removed() {
+        return removed;
+    }
+
+    /**
+     * @return true if both versions hold the same elements, false otherwise
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Diff two trees by walking both of them in order.
+     * <p>
+     * Running time of this operation is O(n + m), it is used when the
+     * trees cannot share any structure.
+     * </p>
+     *
+     * @param from older version
+     * @param to newer version
+     * @param <T> type of elements held by the trees
+     * @return difference between the two trees
+     */
+    static <T> TreeDiff<T> merge(final Tree<T> from, final Tree<T> to) {
+        final List<T> added = new ArrayList<>();
+        final List<T> removed = new ArrayList<>();
+        final Comparator<? super T> comparator = from.comparator();
+        if (!comparator.equals(to.comparator())) {
+            from.foreach(element -> {
+                if (!to.contains(element)) removed.add(element);
+            });
+            to.foreach(element -> {
+                if (!from.contains(element)) added.add(element);
+            });
+            return new TreeDiff<>(added, removed);
+        }
+        final Iterator<T> left = from.iterator();
+        final Iterator<T> right = to.iterator();
+        T l = left.hasNext() ? left.next() : null;
+        T r = right.hasNext() ? right.next() : null;
+        while (l != null && r != null) {
+            final int cmp = comparator.compare(l, r);
+            if (cmp < 0) {
+                removed.add(l);
+                l = left.hasNext() ? left.next() : null;
+            } else if (cmp > 0) {
+                added.add(r);
+                r = right.hasNext() ? right.next() : null;
+            } else {
+                l = left.hasNext() ? left.next() : null;
+                r = right.hasNext() ? right.next() : null;
+            }
+        }
+        for (; l != null; l = left.hasNext() ? left.next() : null) removed.add(l);
+        for (; r != null; r = right.hasNext() ? right.next() : null) added.add(r);
+        return new TreeDiff<>(added, removed);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final TreeDiff<?> diff = (TreeDiff<?>) o;
+        return Objects.equals(added, diff.added) && Objects.equals(removed, diff.removed);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(added, removed);
+    }
+
+    @Override
+    public String toString() {
+        return "+" + added + " -" + removed;
+    }
+}
@@ -0,0 +1,200 @@
+package edu.immutables.bst;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Multi-version store of successive versions of a tree.
+ * <p>
+ * Every commit records the new root under the next version number.
+ * Since versions share most of their nodes, keeping history only costs
+ * the nodes that changed. Old versions are released once they exceed the
+ * retention limits, the current version is always kept.
+ * </p>
+ * <p>
+ * Reads never block: a reader gets an immutable tree that stays valid
+ * for as long as it holds it, even if the version is released in the
+ * meantime. Commits are serialized.
+ * </p>
+ *
+ * @param <T> type of elements held by the tree
+ */
+public final class VersionedTree<T> {
+    private final ConcurrentNavigableMap<Long, Version<T>> versions = new ConcurrentSkipListMap<>();
+    /**
+     * Retained versions by commit instant, the latest one when several share an instant.
+     */
+    private final ConcurrentNavigableMap<Instant, Version<T>> byInstant = new ConcurrentSkipListMap<>();
+    private final int maxVersions;
+    private final Duration maxAge;
+    private final Clock clock;
+    private volatile Version<T> current;
+
+    /**
+     * Create a store keeping every version.
+     *
+     * @param initial tree recorded as version 0
+     */
+    public VersionedTree(final Tree<T> initial) {
+        this(initial, Integer.MAX_VALUE, null, Clock.systemUTC());
+    }
+
+    /**
+     * Create a store with bounded retention.
+     *
+     * @param initial tree recorded as version 0
+     * @param maxVersions maximum number of versions to keep
+     * @param maxAge versions committed longer ago than this are released, null to keep them regardless of age
+     */
+    public VersionedTree(final Tree<T> initial, final int maxVersions, final Duration maxAge) {
+        this(initial, maxVersions, maxAge, Clock.systemUTC());
+    }
+
+    VersionedTree(final Tree<T> initial, final int maxVersions, final Duration maxAge, final Clock clock) {
+        if (maxVersions < 1) throw new IllegalArgumentException("At least one version must be kept: " + maxVersions);
+        this.maxVersions = maxVersions;
+        this.maxAge = maxAge;
+        this.clock = clock;
+        this.current = new Version<>(0, initial, clock.instant());
+        versions.put(0L, current);
+        byInstant.put(current.committed, current);
+    }
+
+    /**
+     * @return tree of the latest version
+     */
+    public Tree<T> current() {
+        return current.tree;
+    }
+
+    /**
+     * @return number of the latest version
+     */
+    public long currentVersion() {
+        return current.number;
+    }
+
+    /**
+     * @return number of the oldest version still retained
+     */
+    public long oldestVersion() {
+        return versions.firstKey();
+    }
+
+    /**
+     * @return number of versions currently retained
+     */
+    public int retainedVersions() {
+        return versions.size();
+    }
+
+    /**
+     * Record a new version.
+     *
+     * @param tree tree of the new version
+     * @return number of the new version
+     */
+    public synchronized long commit(final Tree<T> tree) {
+        final Version<T> version = new Version<>(current.number + 1, tree, clock.instant());
+        versions.put(version.number, version);
+        byInstant.put(version.committed, version);
+        current = version;
+        prune();
+        return version.number;
+    }
+
+    /**
+     * Record a new version computed from the latest one.
+     *
+     * @param update function computing the new tree from the latest one
+     * @return number of the new version
+     */
+    public synchronized long commit(final UnaryOperator<Tree<T>> update) {
+        return commit(update.apply(current.tree));
+    }
+
+    /**
+     * Read the tree as it was at a given version.
+     *
+     * @param version version number
+     * @return tree of the given version
+     * @throws NoSuchElementException if the version was released or not committed yet
+     */
+    public Tree<T> asOf(final long version) {
+        final Version<T> found = versions.get(version);
+        if (found == null) throw new NoSuchElementException("Version not retained: " + version);
+        return found.tree;
+    }
+
+    /**
+     * Read the tree as it was at a given instant.
+     * <p>
+     * Versions are indexed by commit instant, so this is O(log n) in the
+     * number of retained versions.
+     * </p>
+     *
+     * @param instant point in time
+     * @return tree of the latest version committed at or before the given instant
+     * @throws NoSuchElementException if that version was released or the instant precedes the store
+     */
+    public Tree<T> asOf(final Instant instant) {
+        final Map.Entry<Instant, Version<T>> found = byInstant.floorEntry(instant);
+        if (found == null) throw new NoSuchElementException("No version retained at: " + instant);
+        return found.getValue().tree;
+    }
+
+    /**
+     * Release the versions that exceed the retention limits.
+     * <p>
+     * Commits prune automatically, this is only needed to release
+     * versions that aged out while no commits happened.
+     * </p>
+     */
+    public synchronized void prune() {
+        while (versions.size() > maxVersions) release(versions.firstEntry().getValue());
+        if (maxAge == null) return;
+        final Instant limit = clock.instant().minus(maxAge);
+        for (Map.Entry<Long, Version<T>> oldest = versions.firstEntry();
+             oldest.getValue() != current && oldest.getValue().committed.isBefore(limit);
+             oldest = versions.firstEntry()) {
+            release(oldest.getValue());
+        }
+    }
+
+    private void release(final Version<T> version) {
+        byInstant.remove(version.committed, version);
+        versions.remove(version.number);
+    }
+
+    /**
+     * Count the nodes held by the retained versions and how many of them
+     * are shared between versions, to estimate the heap used by history.
+     *
+     * @return node counts of the retained versions
+     */
+    public NodeSharing nodeSharing() {
+        final List<Tree<T>> trees = new ArrayList<>();
+        for (final Version<T> version : versions.values()) trees.add(version.tree);
+        return NodeSharing.of(trees);
+    }
+
+    private static final class Version<T> {
+        final long number;
+        final Tree<T> tree;
+        final Instant committed;
+
+        Version(final long number, final Tree<T> tree, final Instant committed) {
+            this.number = number;
+            this.tree = tree;
+            this.committed = committed;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package edu.immutables.concurrent;
+
+import edu.immutables.bst.Tree;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Lock-free holder of a persistent data structure shared between threads.
+ * <p>
+ * Readers get the current snapshot with a single volatile read, writers
+ * compute the next version from the current one and publish it with
+ * compare-and-set, retrying with exponential backoff when another writer
+ * won the race. The update functions may therefore run more than once
+ * and must be free of side effects.
+ * </p>
+ *
+ * @param <S> type of the snapshot, it must be immutable
+ */
+public class AtomicPersistentRef<S> {
+    /**
+     * Number of failed attempts that only spin before starting to park.
+     */
+    private static final int SPIN_TRIES = 4;
+    private static final long MIN_BACKOFF_NANOS = 1_000;
+    private static final long MAX_BACKOFF_NANOS = 1_000_000;
+
+    private final AtomicReference<S> ref;
+
+    /**
+     * @param initial initial snapshot
+     */
+    public AtomicPersistentRef(final S initial) {
+        this.ref = new AtomicReference<>(initial);
+    }
+
+    /**
+     * Get the current snapshot.
+     * <p>
+     * This operation is wait-free.
+     * </p>
+     *
+     * @return the current snapshot
+     */
+    public S get() {
+        return ref.get();
+    }
+
+    /**
+     * Replace the snapshot if it is still the expected one.
+     *
+     * @param expected expected current snapshot
+     * @param update new snapshot
+     * @return true if the snapshot was replaced, false otherwise
+     */
+    public boolean compareAndSet(final S expected, final S update) {
+        return ref.compareAndSet(expected, update);
+    }
+
+    /**
+     * Atomically replace the snapshot with the result of a function.
+     *
+     * @param f side effect free function computing the next snapshot
+     * @return the new snapshot
+     */
+    public S update(final UnaryOperator<S> f) {
+        for (int attempt = 0; ; ++attempt) {
+            final S current = ref.get();
+            final S next = f.apply(current);
+            if (current == next || ref.compareAndSet(current, next)) return next;
+            backoff(attempt);
+        }
+    }
+
+    /**
+     * Atomically combine the snapshot with a given value.
+     *
+     * @param x value to combine with
+     * @param f side effect free function computing the next snapshot
+     * @param <X> type of the value
+     * @return the new snapshot
+     */
+    public <X> S accumulate(final X x, final BiFunction<? super S, ? super X, ? extends S> f) {
+        return update(current -> f.apply(current, x));
+    }
+
+    /**
+     * Try to replace the snapshot once without retrying.
+     *
+     * @param f side effect free function computing the next snapshot
+     * @return true if the snapshot was replaced, false if another writer won the race
+     */
+    boolean tryUpdate(final UnaryOperator<S> f) {
+        final S current = ref.get();
+        final S next = f.apply(current);
+        return current == next || ref.compareAndSet(current, next);
+    }
+
+    /**
+     * Wait before the next attempt, the wait grows exponentially
+     * with random jitter so that contending writers spread out.
+     *
+     * @param attempt number of failed attempts so far
+     */
+    static void backoff(final int attempt) {
+        if (attempt < SPIN_TRIES) {
+            Thread.yield();
+            return;
+        }
+        final long limit = Math.min(MAX_BACKOFF_NANOS, MIN_BACKOFF_NANOS << Math.min(attempt - SPIN_TRIES, 20));
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(limit / 2, limit + 1));
+    }
+
+    /**
+     * Create a reference to a tree where concurrent adds are combined
+     * into a single {@link Tree#addAll(Iterable)} under contention.
+     *
+     * @param initial initial tree
+     * @param <T> type of elements held by the tree
+     * @return a new combining reference
+     */
+    public static <T> CombiningRef<Tree<T>, T> combining(final Tree<T> initial) {
+        return new CombiningRef<>(initial, Tree::add, Tree::addAll);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(get());
+    }
+}
@@ -0,0 +1,98 @@
+package edu.immutables.concurrent;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * {@link AtomicPersistentRef} that combines concurrent adds.
+ * <p>
+ * An add first tries a single compare-and-set. If it loses the race the
+ * element is queued and one of the waiting threads becomes the combiner:
+ * it drains the queue and applies all the queued elements as a single
+ * batch, so under contention the snapshot is rebuilt once per batch
+ * rather than once per element. Every add returns only after its element
+ * is part of the published snapshot.
+ * </p>
+ *
+ * @param <S> type of the snapshot, it must be immutable
+ * @param <E> type of the added elements
+ */
+public class CombiningRef<S, E> extends AtomicPersistentRef<S> {
+    private final BiFunction<? super S, ? super E, ? extends S> add;
+    private final BiFunction<? super S, ? super List<E>, ? extends S> addAll;
+    private final ConcurrentLinkedQueue<Request<E>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean combining = new AtomicBoolean();
+
+    /**
+     * @param initial initial snapshot
+     * @param add side effect free function adding a single element
+     * @param addAll side effect free function adding a batch of elements
+     */
+    public CombiningRef(final S initial,
+                        final BiFunction<? super S, ? super E, ? extends S> add,
+                        final BiFunction<? super S, ? super List<E>, ? extends S> addAll) {
+        super(initial);
+        this.add = add;
+        this.addAll = addAll;
+    }
+
+    /**
+     * Atomically add an element to the snapshot.
+     *
+     * @param element element to add
+     * @throws RuntimeException thrown by the add functions, when combined the whole batch fails
+     * @throws Error thrown by the add functions, handed to every add of the batch like exceptions
+     */
+    public void add(final E element) {
+        if (tryUpdate(current -> add.apply(current, element))) return;
+        final Request<E> request = new Request<>(element);
+        queue.add(request);
+        for (int attempt = 0; !request.done; ++attempt) {
+            if (combining.compareAndSet(false, true)) {
+                try {
+                    combine();
+                } finally {
+                    combining.set(false);
+                }
+            } else {
+                backoff(attempt);
+            }
+        }
+        if (request.failure instanceof RuntimeException) throw (RuntimeException) request.failure;
+        if (request.failure instanceof Error) throw (Error) request.failure;
+        if (request.failure != null) throw new UndeclaredThrowableException(request.failure);
+    }
+
+    private void combine() {
+        final List<Request<E>> requests = new ArrayList<>();
+        for (Request<E> request = queue.poll(); request != null; request = queue.poll()) requests.add(request);
+        if (requests.isEmpty()) return;
+        final List<E> batch = new ArrayList<>(requests.size());
+        for (final Request<E> request : requests) batch.add(request.element);
+        // whatever addAll throws, every drained request has to be completed or its thread spins forever
+        Throwable failure = null;
+        try {
+            update(current -> addAll.apply(current, batch));
+        } catch (Throwable e) {
+            failure = e;
+        }
+        for (final Request<E> request : requests) {
+            request.failure = failure;
+            request.done = true;
+        }
+    }
+
+    private static final class Request<E> {
+        final E element;
+        Throwable failure;
+        volatile boolean done;
+
+        Request(final E element) {
+            this.element = element;
+        }
+    }
+}
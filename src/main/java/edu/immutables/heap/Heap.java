@@ -0,0 +1,170 @@
+package edu.immutables.heap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Interface representing Immutable priority queues.
+ * <p>
+ * Elements are ordered either by their natural ordering or by the
+ * comparator the heap was created with. Unlike a tree, equal elements
+ * are all kept, so several entries may share the same priority.
+ * </p>
+ *
+ * @param <T> type of elements held by the heap
+ */
+public interface Heap<T> extends Iterable<T> {
+
+    /**
+     * Add an element to the heap in O(1).
+     *
+     * @param element element to add
+     * @return a new heap with the element added
+     */
+    Heap<T> insert(T element);
+
+    /**
+     * Get the smallest element of the heap in O(1).
+     *
+     * @return the smallest element
+     * @throws NoSuchElementException if the heap is empty
+     */
+    T findMin();
+
+    /**
+     * Remove the smallest element of the heap in O(log n).
+     * <p>
+     * The bound is worst case, so it holds for any version of the heap,
+     * including one that already had its minimum removed before.
+     * </p>
+     *
+     * @return a new heap without its smallest element
+     * @throws NoSuchElementException if the heap is empty
+     */
+    Heap<T> deleteMin();
+
+    /**
+     * Meld two heaps.
+     * <p>
+     * Runs in O(log n) when both heaps use the same comparator, otherwise
+     * the elements of the other heap are inserted one by one.
+     * </p>
+     *
+     * @param other heap to meld with
+     * @return a new heap holding the elements of both heaps
+     */
+    Heap<T> meld(Heap<T> other);
+
+    /**
+     * @return the number of elements in the heap, duplicates included
+     */
+    int size();
+
+    /**
+     * @return true if the heap is empty, false otherwise
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the comparator ordering the elements of the heap
+     */
+    Comparator<? super T> comparator();
+
+    /**
+     * Spliterator over the elements in ascending order, every element
+     * consumed costs a {@link #deleteMin()}.
+     */
+    @Override
+    default Spliterator<T> spliterator() {
+        return Spliterators.spliterator(iterator(), size(), Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * @return an instance of {@link Stream} holding the elements of the heap in ascending order
+     */
+    default Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Get an empty heap ordered by the natural ordering of its elements.
+     *
+     * @param <T> type of elements
+     * @return an empty heap
+     */
+    static <T extends Comparable<? super T>> Heap<T> empty() {
+        return SkewBinomialHeap.empty(Comparator.naturalOrder());
+    }
+
+    /**
+     * Get an empty heap ordered by a comparator.
+     *
+     * @param comparator comparator ordering the elements
+     * @param <T> type of elements
+     * @return an empty heap
+     */
+    static <T> Heap<T> empty(final Comparator<? super T> comparator) {
+        return SkewBinomialHeap.empty(comparator);
+    }
+
+    /**
+     * Factory method to build a Heap from a given collection.
+     *
+     * @param collection collection to build from
+     * @param <T> type of elements in the collection
+     * @return a new Heap of the elements in the given collection
+     */
+    static <T extends Comparable<? super T>> Heap<T> of(final Collection<? extends T> collection) {
+        return of(Comparator.naturalOrder(), collection);
+    }
+
+    /**
+     * Factory method to build a Heap ordered by a comparator from a given collection.
+     *
+     * @param comparator comparator ordering the elements
+     * @param collection collection to build from
+     * @param <T> type of elements in the collection
+     * @return a new Heap of the elements in the given collection
+     */
+    static <T> Heap<T> of(final Comparator<? super T> comparator, final Collection<? extends T> collection) {
+        Heap<T> result = empty(comparator);
+        for (final T element : collection) result = result.insert(element);
+        return result;
+    }
+
+    /**
+     * Sort a collection with heapsort, equal elements are all kept.
+     *
+     * @param collection collection to sort
+     * @param comparator comparator ordering the elements
+     * @param <T> type of elements in the collection
+     * @return a new list of the elements in ascending order
+     */
+    static <T> List<T> sort(final Collection<? extends T> collection, final Comparator<? super T> comparator) {
+        final List<T> sorted = new ArrayList<>(collection.size());
+        for (Heap<T> heap = of(comparator, collection); !heap.isEmpty(); heap = heap.deleteMin()) {
+            sorted.add(heap.findMin());
+        }
+        return sorted;
+    }
+
+    /**
+     * Sort a collection by natural ordering with heapsort, equal elements are all kept.
+     *
+     * @param collection collection to sort
+     * @param <T> type of elements in the collection
+     * @return a new list of the elements in ascending order
+     */
+    static <T extends Comparable<? super T>> List<T> sort(final Collection<? extends T> collection) {
+        return sort(collection, Comparator.naturalOrder());
+    }
+}
@@ -0,0 +1,239 @@
+package edu.immutables.heap;
+
+import edu.immutables.list.impl.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * Persistent skew binomial heap.
+ * <p>
+ * The heap is a list of skew binomial trees in increasing rank order, only
+ * the first two trees may share a rank. Insert either adds a rank 0 tree or
+ * skew links the new element with the first two trees, so it never carries
+ * more than once. Delete-min removes the tree with the smallest root, melds
+ * its children back and reinserts the extra elements the root kept from skew
+ * links. There are O(log n) trees and children, which bounds every operation.
+ * </p>
+ * <p>
+ * The bounds are worst case rather than amortized, so they hold for every
+ * version of the heap: calling delete-min again and again on the same old
+ * version costs O(log n) each time, which amortized heaps such as pairing
+ * heaps do not guarantee once they are used persistently.
+ * </p>
+ *
+ * @param <T> type of elements held by the heap
+ */
+final class SkewBinomialHeap<T> implements Heap<T> {
+    private static final ImmutableList<?> NIL = ImmutableList.emptyList();
+
+    private final ImmutableList<Node<T>> trees;
+    /**
+     * Smallest root, cached so findMin is O(1), null when the heap is empty.
+     */
+    private final T min;
+    private final int size;
+    private final Comparator<? super T> comparator;
+
+    private SkewBinomialHeap(final ImmutableList<Node<T>> trees, final T min, final int size,
+                             final Comparator<? super T> comparator) {
+        this.trees = trees;
+        this.min = min;
+        this.size = size;
+        this.comparator = comparator;
+    }
+
+    static <T> SkewBinomialHeap<T> empty(final Comparator<? super T> comparator) {
+        return new SkewBinomialHeap<>(nil(), null, 0, Objects.requireNonNull(comparator));
+    }
+
+    @Override
+    public Heap<T> insert(final T element) {
+        final T newMin = size == 0 || comparator.compare(element, min) < 0 ? element : min;
+        return new SkewBinomialHeap<>(insert(element, trees, comparator), newMin, size + 1, comparator);
+    }
+
+    @Override
+    public T findMin() {
+        if (size == 0) throw new NoSuchElementException("Empty heap");
+        return min;
+    }
+
+    @Override
+    public Heap<T> deleteMin() {
+        if (size == 0) throw new NoSuchElementException("Empty heap");
+        final List<Node<T>> others = new ArrayList<>();
+        Node<T> minTree = null;
+        for (final Node<T> tree : trees) {
+            if (minTree == null && comparator.compare(tree.root, min) == 0) minTree = tree;
+            else others.add(tree);
+        }
+        ImmutableList<Node<T>> rest = nil();
+        for (int i = others.size() - 1; i >= 0; --i) rest = rest.addHead(others.get(i));
+        ImmutableList<Node<T>> children = nil();
+        for (final Node<T> child : minTree.children) children = children.addHead(child);
+        ImmutableList<Node<T>> result = meld(children, rest, comparator);
+        for (final T element : minTree.extra) result = insert(element, result, comparator);
+        T newMin = null;
+        for (final Node<T> tree : result) {
+            if (newMin == null || comparator.compare(tree.root, newMin) < 0) newMin = tree.root;
+        }
+        return new SkewBinomialHeap<>(result, newMin, size - 1, comparator);
+    }
+
+    @Override
+    public Heap<T> meld(final Heap<T> other) {
+        if (other.isEmpty()) return this;
+        if (size == 0 && other.comparator() == comparator) return other;
+        if (other instanceof SkewBinomialHeap && other.comparator() == comparator) {
+            final SkewBinomialHeap<T> heap = (SkewBinomialHeap<T>) other;
+            final T newMin = comparator.compare(heap.min, min) < 0 ? heap.min : min;
+            return new SkewBinomialHeap<>(meld(trees, heap.trees, comparator), newMin, size + heap.size, comparator);
+        }
+        Heap<T> result = this;
+        for (final T element : other) result = result.insert(element);
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private Heap<T> rest = SkewBinomialHeap.this;
+
+            @Override
+            public boolean hasNext() {
+                return !rest.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                final T min = rest.findMin();
+                rest = rest.deleteMin();
+                return min;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        final StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (final T element : this) joiner.add(String.valueOf(element));
+        return joiner.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> ImmutableList<E> nil() {
+        return (ImmutableList<E>) NIL;
+    }
+
+    /**
+     * Add an element to a list of trees, skew linking it with the first two trees when they share a rank.
+     */
+    private static <T> ImmutableList<Node<T>> insert(final T element, final ImmutableList<Node<T>> trees,
+                                                     final Comparator<? super T> comparator) {
+        if (!trees.isEmpty() && !trees.getTail().isEmpty()) {
+            final Node<T> first = trees.getHead();
+            final Node<T> second = trees.getTail().getHead();
+            if (first.rank == second.rank) {
+                return trees.getTail().getTail().addHead(skewLink(element, first, second, comparator));
+            }
+        }
+        return trees.addHead(new Node<>(element, 0, nil(), nil()));
+    }
+
+    /**
+     * Link two trees of the same rank, the one with the larger root becomes
+     * the first child of the other one, ties keep the first root on top.
+     */
+    private static <T> Node<T> link(final Node<T> a, final Node<T> b, final Comparator<? super T> comparator) {
+        if (comparator.compare(b.root, a.root) < 0) return new Node<>(b.root, b.rank + 1, b.extra, b.children.addHead(a));
+        return new Node<>(a.root, a.rank + 1, a.extra, a.children.addHead(b));
+    }
+
+    /**
+     * Link two trees of the same rank with an element, which becomes the root
+     * if it is the smallest and is otherwise kept aside by the root.
+     */
+    private static <T> Node<T> skewLink(final T element, final Node<T> a, final Node<T> b,
+                                        final Comparator<? super T> comparator) {
+        final Node<T> linked = link(a, b, comparator);
+        if (comparator.compare(linked.root, element) < 0) {
+            return new Node<>(linked.root, linked.rank, linked.extra.addHead(element), linked.children);
+        }
+        return new Node<>(element, linked.rank, linked.extra.addHead(linked.root), linked.children);
+    }
+
+    private static <T> ImmutableList<Node<T>> meld(final ImmutableList<Node<T>> a, final ImmutableList<Node<T>> b,
+                                                   final Comparator<? super T> comparator) {
+        return meldUnique(normalize(a, comparator), normalize(b, comparator), comparator);
+    }
+
+    /**
+     * Link the first tree with the following ones while their rank is not greater, leaving unique ranks.
+     */
+    private static <T> ImmutableList<Node<T>> normalize(final ImmutableList<Node<T>> trees,
+                                                        final Comparator<? super T> comparator) {
+        return trees.isEmpty() ? trees : insertTree(trees.getHead(), trees.getTail(), comparator);
+    }
+
+    private static <T> ImmutableList<Node<T>> insertTree(Node<T> tree, ImmutableList<Node<T>> trees,
+                                                         final Comparator<? super T> comparator) {
+        while (!trees.isEmpty() && trees.getHead().rank <= tree.rank) {
+            tree = link(tree, trees.getHead(), comparator);
+            trees = trees.getTail();
+        }
+        return trees.addHead(tree);
+    }
+
+    /**
+     * Meld two lists of trees of strictly increasing ranks like adding binary numbers,
+     * the recursion is as deep as the number of trees, O(log n).
+     */
+    private static <T> ImmutableList<Node<T>> meldUnique(final ImmutableList<Node<T>> a,
+                                                         final ImmutableList<Node<T>> b,
+                                                         final Comparator<? super T> comparator) {
+        if (a.isEmpty()) return b;
+        if (b.isEmpty()) return a;
+        final Node<T> first = a.getHead();
+        final Node<T> second = b.getHead();
+        if (first.rank < second.rank) return meldUnique(a.getTail(), b, comparator).addHead(first);
+        if (second.rank < first.rank) return meldUnique(a, b.getTail(), comparator).addHead(second);
+        return insertTree(link(first, second, comparator), meldUnique(a.getTail(), b.getTail(), comparator),
+                comparator);
+    }
+
+    /**
+     * Skew binomial tree, its children are in decreasing rank order.
+     */
+    private static final class Node<T> {
+        final T root;
+        final int rank;
+        /**
+         * Elements kept aside by skew links, all greater or equal to the root.
+         */
+        final ImmutableList<T> extra;
+        final ImmutableList<Node<T>> children;
+
+        Node(final T root, final int rank, final ImmutableList<T> extra, final ImmutableList<Node<T>> children) {
+            this.root = root;
+            this.rank = rank;
+            this.extra = extra;
+            this.children = children;
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package edu.immutables.map;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Persistent hash array mapped trie.
+ * <p>
+ * Every level consumes 5 bits of the key hash. A node only allocates the
+ * slots that are in use, a 32 bit bitmap records which of the 32 possible
+ * slots are present and the position of a slot in the node array is the
+ * number of bits set below its own. Each slot takes two array cells: a key
+ * and its value, or a null key followed by the child node. Keys with
+ * identical hashes end up in a collision node holding them in a flat array.
+ * </p>
+ * <p>
+ * Updates copy the nodes on the path to the changed slot only. A removal
+ * that leaves a child with a single mapping inlines that mapping into the
+ * parent, so the shape of the trie only depends on its keys.
+ * </p>
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+final class HashTrieMap<K, V> implements ImmutableMap<K, V> {
+    static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    /**
+     * One bitmap level per 5 bits of the hash plus a trailing collision node.
+     */
+    private static final int MAX_DEPTH = (Integer.SIZE + BITS - 1) / BITS + 1;
+    private static final HashTrieMap<?, ?> EMPTY = new HashTrieMap<>(BitmapNode.EMPTY);
+    /**
+     * Resolver keeping the value already mapped, merging with it reuses shared subtrees in O(1).
+     */
+    static final BiFunction<Object, Object, Object> KEEP_EXISTING = (existing, incoming) -> existing;
+
+    private final Node root;
+
+    private HashTrieMap(final Node root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> HashTrieMap<K, V> empty() {
+        return (HashTrieMap<K, V>) EMPTY;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(final K key) {
+        return (V) root.get(key, hash(key), 0);
+    }
+
+    @Override
+    public HashTrieMap<K, V> put(final K key, final V value) {
+        Objects.requireNonNull(value, "Null values are not supported");
+        return withRoot(root.put(key, value, hash(key), 0, null));
+    }
+
+    @Override
+    public HashTrieMap<K, V> remove(final K key) {
+        return withRoot(root.remove(key, hash(key), 0));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ImmutableMap<K, V> merge(final ImmutableMap<K, V> other,
+                                    final BiFunction<? super V, ? super V, ? extends V> resolve) {
+        final BiFunction<Object, Object, Object> values = (BiFunction<Object, Object, Object>) resolve;
+        if (other instanceof HashTrieMap) {
+            final Node merged = merge(root, ((HashTrieMap<K, V>) other).root, 0, values);
+            return merged == ((HashTrieMap<K, V>) other).root ? other : withRoot(merged);
+        }
+        Node merged = root;
+        for (final Map.Entry<K, V> entry : other) {
+            final K key = entry.getKey();
+            merged = merged.put(key, entry.getValue(), hash(key), 0, values);
+        }
+        return withRoot(merged);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void foreach(final BiConsumer<? super K, ? super V> consumer) {
+        root.foreach((BiConsumer<Object, Object>) consumer);
+    }
+
+    @Override
+    public int size() {
+        return root.size();
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Cursor<>(root, AbstractMap.SimpleImmutableEntry::new);
+    }
+
+    @Override
+    public Spliterator<Map.Entry<K, V>> spliterator() {
+        return Spliterators.spliterator(iterator(), size(),
+                Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * @return an iterator over the keys of the map
+     */
+    Iterator<K> keyIterator() {
+        return new Cursor<>(root, (key, value) -> key);
+    }
+
+    private HashTrieMap<K, V> withRoot(final Node updated) {
+        if (updated == root) return this;
+        return updated.size() == 0 ? empty() : new HashTrieMap<>(updated);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImmutableMap)) return false;
+        final ImmutableMap<Object, Object> other = (ImmutableMap<Object, Object>) o;
+        if (size() != other.size()) return false;
+        for (final Map.Entry<K, V> entry : this) {
+            if (!entry.getValue().equals(other.get(entry.getKey()))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (final Map.Entry<K, V> entry : this) hash += entry.hashCode();
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        foreach((key, value) -> {
+            if (builder.length() > 1) builder.append(", ");
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+
+    static int hash(final Object key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int fragment(final int hash, final int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    private static int bit(final int hash, final int shift) {
+        return 1 << fragment(hash, shift);
+    }
+
+    /**
+     * Build the smallest node holding two mappings with distinct keys.
+     */
+    private static Node pair(final Object key1, final Object value1, final int hash1,
+                             final Object key2, final Object value2, final int hash2, final int shift) {
+        if (hash1 == hash2) return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+        final int fragment1 = fragment(hash1, shift);
+        final int fragment2 = fragment(hash2, shift);
+        if (fragment1 == fragment2) {
+            return new BitmapNode(1 << fragment1,
+                    new Object[]{null, pair(key1, value1, hash1, key2, value2, hash2, shift + BITS)}, 2);
+        }
+        final int bitmap = (1 << fragment1) | (1 << fragment2);
+        return fragment1 < fragment2
+                ? new BitmapNode(bitmap, new Object[]{key1, value1, key2, value2}, 2)
+                : new BitmapNode(bitmap, new Object[]{key2, value2, key1, value1}, 2);
+    }
+
+    /**
+     * Merge two nodes found at the same position of two tries, reusing
+     * every slot present in only one of them. A subtree shared by both is
+     * reused as is only when resolving keeps the existing values.
+     */
+    static Node merge(final Node a, final Node b, final int shift, final BiFunction<Object, Object, Object> resolve) {
+        if (b.size() == 0) return a;
+        if (a == b) return resolve == KEEP_EXISTING ? a : a.mergeSelf(resolve);
+        if (a.size() == 0) return b;
+        if (a instanceof BitmapNode && b instanceof BitmapNode) {
+            return mergeBitmaps((BitmapNode) a, (BitmapNode) b, shift, resolve);
+        }
+        return putAll(a, b, shift, resolve);
+    }
+
+    private static Node mergeBitmaps(final BitmapNode a, final BitmapNode b, final int shift,
+                                     final BiFunction<Object, Object, Object> resolve) {
+        final int bitmap = a.bitmap | b.bitmap;
+        final Object[] array = new Object[2 * Integer.bitCount(bitmap)];
+        boolean sameAsA = bitmap == a.bitmap;
+        boolean sameAsB = bitmap == b.bitmap;
+        int size = 0;
+        for (int rest = bitmap, i = 0; rest != 0; rest &= rest - 1, i += 2) {
+            final int bit = rest & -rest;
+            if ((b.bitmap & bit) == 0) {
+                System.arraycopy(a.array, a.index(bit), array, i, 2);
+            } else if ((a.bitmap & bit) == 0) {
+                System.arraycopy(b.array, b.index(bit), array, i, 2);
+            } else {
+                mergeSlot(a.array, a.index(bit), b.array, b.index(bit), array, i, shift, resolve);
+                sameAsA &= array[i] == a.array[a.index(bit)] && array[i + 1] == a.array[a.index(bit) + 1];
+                sameAsB &= array[i] == b.array[b.index(bit)] && array[i + 1] == b.array[b.index(bit) + 1];
+            }
+            size += array[i] == null ? ((Node) array[i + 1]).size() : 1;
+        }
+        if (sameAsA) return a;
+        if (sameAsB) return b;
+        return new BitmapNode(bitmap, array, size);
+    }
+
+    private static void mergeSlot(final Object[] a, final int i, final Object[] b, final int j,
+                                  final Object[] target, final int k, final int shift,
+                                  final BiFunction<Object, Object, Object> resolve) {
+        final Object keyA = a[i], valueA = a[i + 1], keyB = b[j], valueB = b[j + 1];
+        if (keyA == null && keyB == null) {
+            target[k + 1] = merge((Node) valueA, (Node) valueB, shift + BITS, resolve);
+        } else if (keyA == null) {
+            target[k + 1] = ((Node) valueA).put(keyB, valueB, hash(keyB), shift + BITS, resolve);
+        } else if (keyB == null) {
+            target[k + 1] = ((Node) valueB).put(keyA, valueA, hash(keyA), shift + BITS,
+                    (existing, incoming) -> resolve.apply(incoming, existing));
+        } else if (keyA.equals(keyB)) {
+            target[k] = keyA;
+            target[k + 1] = Objects.requireNonNull(resolve.apply(valueA, valueB), "Null values are not supported");
+        } else {
+            target[k + 1] = pair(keyA, valueA, hash(keyA), keyB, valueB, hash(keyB), shift + BITS);
+        }
+    }
+
+    private static Node putAll(Node target, final Node source, final int shift,
+                               final BiFunction<Object, Object, Object> resolve) {
+        final Object[] array = source.array;
+        for (int i = 0; i < array.length; i += 2) {
+            if (array[i] == null) {
+                target = putAll(target, (Node) array[i + 1], shift, resolve);
+            } else {
+                target = target.put(array[i], array[i + 1], hash(array[i]), shift, resolve);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Node of the trie, its array holds key value pairs or a null key
+     * followed by a child node.
+     */
+    abstract static class Node {
+        final Object[] array;
+
+        Node(final Object[] array) {
+            this.array = array;
+        }
+
+        abstract int size();
+
+        /**
+         * @return the value mapped to the key, null if there is none
+         */
+        abstract Object get(Object key, int hash, int shift);
+
+        /**
+         * @param resolve function computing the new value from the existing one and the
+         *                given one when the key is already mapped, null to replace it
+         */
+        abstract Node put(Object key, Object value, int hash, int shift, BiFunction<Object, Object, Object> resolve);
+
+        abstract Node remove(Object key, int hash, int shift);
+
+        /**
+         * @return true if the node holds a single mapping and no child
+         */
+        final boolean isSingle() {
+            return array.length == 2 && array[0] != null;
+        }
+
+        final void foreach(final BiConsumer<Object, Object> consumer) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    ((Node) array[i + 1]).foreach(consumer);
+                } else {
+                    consumer.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        /**
+         * @return a node with the same keys and children holding the given array
+         */
+        abstract Node withArray(Object[] array);
+
+        /**
+         * Merge a node with itself, resolving every value against itself.
+         */
+        final Node mergeSelf(final BiFunction<Object, Object, Object> resolve) {
+            Object[] copy = null;
+            for (int i = 0; i < array.length; i += 2) {
+                final Object v = array[i + 1];
+                final Object merged = array[i] == null
+                        ? ((Node) v).mergeSelf(resolve)
+                        : Objects.requireNonNull(resolve.apply(v, v), "Null values are not supported");
+                if (merged == v) continue;
+                if (copy == null) copy = array.clone();
+                copy[i + 1] = merged;
+            }
+            return copy == null ? this : withArray(copy);
+        }
+
+        final Object[] with(final int index, final Object value) {
+            final Object[] copy = array.clone();
+            copy[index] = value;
+            return copy;
+        }
+
+        final Object[] withPair(final int index, final Object key, final Object value) {
+            final Object[] copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, index);
+            copy[index] = key;
+            copy[index + 1] = value;
+            System.arraycopy(array, index, copy, index + 2, array.length - index);
+            return copy;
+        }
+
+        final Object[] withoutPair(final int index) {
+            final Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, index);
+            System.arraycopy(array, index + 2, copy, index, copy.length - index);
+            return copy;
+        }
+    }
+
+    static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0], 0);
+
+        final int bitmap;
+        private final int size;
+
+        BitmapNode(final int bitmap, final Object[] array, final int size) {
+            super(array);
+            this.bitmap = bitmap;
+            this.size = size;
+        }
+
+        int index(final int bit) {
+            return 2 * Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        int size() {
+            return size;
+        }
+
+        @Override
+        Node withArray(final Object[] array) {
+            return new BitmapNode(bitmap, array, size);
+        }
+
+        @Override
+        Object get(final Object key, final int hash, final int shift) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return null;
+            final int i = index(bit);
+            final Object k = array[i];
+            if (k == null) return ((Node) array[i + 1]).get(key, hash, shift + BITS);
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        @Override
+        Node put(final Object key, final Object value, final int hash, final int shift,
+                 final BiFunction<Object, Object, Object> resolve) {
+            final int bit = bit(hash, shift);
+            final int i = index(bit);
+            if ((bitmap & bit) == 0) return new BitmapNode(bitmap | bit, withPair(i, key, value), size + 1);
+            final Object k = array[i];
+            final Object v = array[i + 1];
+            if (k == null) {
+                final Node child = (Node) v;
+                final Node updated = child.put(key, value, hash, shift + BITS, resolve);
+                if (updated == child) return this;
+                return new BitmapNode(bitmap, with(i + 1, updated), size - child.size() + updated.size());
+            }
+            if (key.equals(k)) {
+                final Object merged = resolve == null
+                        ? value : Objects.requireNonNull(resolve.apply(v, value), "Null values are not supported");
+                return merged == v ? this : new BitmapNode(bitmap, with(i + 1, merged), size);
+            }
+            final Object[] copy = with(i, null);
+            copy[i + 1] = pair(k, v, hash(k), key, value, hash, shift + BITS);
+            return new BitmapNode(bitmap, copy, size + 1);
+        }
+
+        @Override
+        Node remove(final Object key, final int hash, final int shift) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return this;
+            final int i = index(bit);
+            final Object k = array[i];
+            if (k == null) {
+                final Node child = (Node) array[i + 1];
+                final Node updated = child.remove(key, hash, shift + BITS);
+                if (updated == child) return this;
+                // children hold at least two mappings, so they never end up empty
+                if (updated.isSingle()) {
+                    final Object[] copy = with(i, updated.array[0]);
+                    copy[i + 1] = updated.array[1];
+                    return new BitmapNode(bitmap, copy, size - 1);
+                }
+                return new BitmapNode(bitmap, with(i + 1, updated), size - 1);
+            }
+            if (!key.equals(k)) return this;
+            if (size == 1) return EMPTY;
+            return new BitmapNode(bitmap ^ bit, withoutPair(i), size - 1);
+        }
+    }
+
+    static final class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(final int hash, final Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int find(final Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) return i;
+            }
+            return -1;
+        }
+
+        @Override
+        int size() {
+            return array.length / 2;
+        }
+
+        @Override
+        Object get(final Object key, final int hash, final int shift) {
+            if (hash != this.hash) return null;
+            final int i = find(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node put(final Object key, final Object value, final int hash, final int shift,
+                 final BiFunction<Object, Object, Object> resolve) {
+            if (hash != this.hash) {
+                return new BitmapNode(bit(this.hash, shift), new Object[]{null, this}, size())
+                        .put(key, value, hash, shift, resolve);
+            }
+            final int i = find(key);
+            if (i < 0) return new CollisionNode(hash, withPair(array.length, key, value));
+            final Object v = array[i + 1];
+            final Object merged = resolve == null
+                    ? value : Objects.requireNonNull(resolve.apply(v, value), "Null values are not supported");
+            return merged == v ? this : new CollisionNode(hash, with(i + 1, merged));
+        }
+
+        @Override
+        Node withArray(final Object[] array) {
+            return new CollisionNode(hash, array);
+        }
+
+        @Override
+        Node remove(final Object key, final int hash, final int shift) {
+            if (hash != this.hash) return this;
+            final int i = find(key);
+            return i < 0 ? this : new CollisionNode(hash, withoutPair(i));
+        }
+    }
+
+    /**
+     * Depth first iterator keeping the array and position of every level
+     * on the path to the next mapping.
+     */
+    private static final class Cursor<R> implements Iterator<R> {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private final BiFunction<Object, Object, ?> element;
+        private int depth;
+        private Object nextKey;
+        private Object nextValue;
+
+        Cursor(final Node root, final BiFunction<Object, Object, ?> element) {
+            this.element = element;
+            arrays[0] = root.array;
+            advance();
+        }
+
+        private void advance() {
+            while (depth >= 0) {
+                final Object[] array = arrays[depth];
+                final int i = positions[depth];
+                if (i == array.length) {
+                    --depth;
+                    continue;
+                }
+                positions[depth] = i + 2;
+                if (array[i] == null) {
+                    arrays[++depth] = ((Node) array[i + 1]).array;
+                    positions[depth] = 0;
+                } else {
+                    nextKey = array[i];
+                    nextValue = array[i + 1];
+                    return;
+                }
+            }
+            nextKey = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextKey != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public R next() {
+            if (nextKey == null) throw new NoSuchElementException();
+            final R result = (R) element.apply(nextKey, nextValue);
+            advance();
+            return result;
+        }
+    }
+}
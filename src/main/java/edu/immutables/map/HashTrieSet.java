@@ -0,0 +1,108 @@
+package edu.immutables.map;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+/**
+ * Persistent hash set backed by a {@link HashTrieMap} mapping every
+ * element to the same marker value.
+ *
+ * @param <T> type of elements held by the set
+ */
+final class HashTrieSet<T> implements ImmutableSet<T> {
+    private static final Object PRESENT = Boolean.TRUE;
+    private static final HashTrieSet<?> EMPTY = new HashTrieSet<>(HashTrieMap.empty());
+
+    private final HashTrieMap<T, Object> map;
+
+    private HashTrieSet(final HashTrieMap<T, Object> map) {
+        this.map = map;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> HashTrieSet<T> empty() {
+        return (HashTrieSet<T>) EMPTY;
+    }
+
+    @Override
+    public boolean contains(final T element) {
+        return map.containsKey(element);
+    }
+
+    @Override
+    public ImmutableSet<T> add(final T element) {
+        return withMap(map.put(element, PRESENT));
+    }
+
+    @Override
+    public ImmutableSet<T> remove(final T element) {
+        return withMap(map.remove(element));
+    }
+
+    @Override
+    public ImmutableSet<T> union(final ImmutableSet<T> other) {
+        if (other instanceof HashTrieSet) {
+            final ImmutableMap<T, Object> merged = map.merge(((HashTrieSet<T>) other).map, HashTrieMap.KEEP_EXISTING);
+            return merged == ((HashTrieSet<T>) other).map ? other : withMap((HashTrieMap<T, Object>) merged);
+        }
+        HashTrieMap<T, Object> merged = map;
+        for (final T element : other) merged = merged.put(element, PRESENT);
+        return withMap(merged);
+    }
+
+    private HashTrieSet<T> withMap(final HashTrieMap<T, Object> updated) {
+        if (updated == map) return this;
+        return updated.size() == 0 ? empty() : new HashTrieSet<>(updated);
+    }
+
+    @Override
+    public void foreach(final Consumer<? super T> consumer) {
+        map.foreach((element, present) -> consumer.accept(element));
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return map.keyIterator();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(iterator(), size(),
+                Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ImmutableSet)) return false;
+        final ImmutableSet<Object> other = (ImmutableSet<Object>) o;
+        if (size() != other.size()) return false;
+        for (final T element : this) {
+            if (!other.contains(element)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (final T element : this) hash += element.hashCode();
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (final T element : this) joiner.add(String.valueOf(element));
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,138 @@
+package edu.immutables.map;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Interface representing Immutable hash maps.
+ * <p>
+ * Keys are spread over a hash array mapped trie of 32-way nodes, so
+ * {@code get}, {@code put} and {@code remove} run in O(log32 n) hashing
+ * and equality checks instead of ordering comparisons. Null keys and
+ * values are not supported.
+ * </p>
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public interface ImmutableMap<K, V> extends Iterable<Map.Entry<K, V>> {
+
+    /**
+     * Get the value mapped to a key.
+     *
+     * @param key key to look up
+     * @return the value mapped to the key, null if there is none
+     */
+    V get(K key);
+
+    /**
+     * Get the value mapped to a key or a default value.
+     *
+     * @param key key to look up
+     * @param defaultValue value returned if the key is not mapped
+     * @return the value mapped to the key, the default value if there is none
+     */
+    default V getOrDefault(final K key, final V defaultValue) {
+        final V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Test if the map holds a key.
+     *
+     * @param key target key
+     * @return true if the key is mapped, false otherwise
+     */
+    default boolean containsKey(final K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Map a key to a value.
+     *
+     * @param key key to map
+     * @param value value to map the key to
+     * @return a new map with the key mapped to the value
+     */
+    ImmutableMap<K, V> put(K key, V value);
+
+    /**
+     * Remove the mapping of a key.
+     *
+     * @param key key to remove
+     * @return a new map without the key
+     */
+    ImmutableMap<K, V> remove(K key);
+
+    /**
+     * Merge two maps.
+     * <p>
+     * Nodes found only in one of the maps are reused as they are.
+     * {@code resolve} is called for every key mapped in both maps, including
+     * the keys of subtrees shared by both, and nodes whose values it keeps
+     * are reused too.
+     * </p>
+     *
+     * @param other map to merge with
+     * @param resolve function computing the value of keys mapped in both maps
+     *                from the value in this map and the value in the other one
+     * @return a new map with the mappings of both maps
+     */
+    ImmutableMap<K, V> merge(ImmutableMap<K, V> other, BiFunction<? super V, ? super V, ? extends V> resolve);
+
+    /**
+     * Apply an action over the mappings of the map.
+     *
+     * @param consumer action to apply
+     */
+    void foreach(BiConsumer<? super K, ? super V> consumer);
+
+    /**
+     * @return the number of mappings in the map
+     */
+    int size();
+
+    /**
+     * @return true if the map is empty, false otherwise
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return an instance of {@link Stream} holding the mappings of the map
+     */
+    default Stream<Map.Entry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Get an empty map instance.
+     *
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @return an empty map
+     */
+    static <K, V> ImmutableMap<K, V> empty() {
+        return HashTrieMap.empty();
+    }
+
+    /**
+     * Factory method to build an ImmutableMap from a given map.
+     *
+     * @param map map to build from
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     * @return a new ImmutableMap with the mappings of the given map
+     */
+    static <K, V> ImmutableMap<K, V> of(final Map<? extends K, ? extends V> map) {
+        ImmutableMap<K, V> result = empty();
+        for (final Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+}
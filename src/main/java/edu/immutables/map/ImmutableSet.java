@@ -0,0 +1,112 @@
+package edu.immutables.map;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Interface representing Immutable hash sets.
+ * <p>
+ * Elements are held in the same hash array mapped trie as
+ * {@link ImmutableMap}, null elements are not supported.
+ * </p>
+ *
+ * @param <T> type of elements held by the set
+ */
+public interface ImmutableSet<T> extends Iterable<T> {
+
+    /**
+     * Test if the set contains an element.
+     *
+     * @param element target element
+     * @return true if the set contains the element, false otherwise
+     */
+    boolean contains(T element);
+
+    /**
+     * Add an element to the set.
+     *
+     * @param element element to add
+     * @return a new set with the element added
+     */
+    ImmutableSet<T> add(T element);
+
+    /**
+     * Remove an element from the set.
+     *
+     * @param element element to remove
+     * @return a new set with the element removed
+     */
+    ImmutableSet<T> remove(T element);
+
+    /**
+     * Union two sets, sharing the nodes found in only one of them.
+     *
+     * @param other other set to union with
+     * @return a new set of the elements of both sets
+     */
+    ImmutableSet<T> union(ImmutableSet<T> other);
+
+    /**
+     * Apply an action over the elements of the set.
+     *
+     * @param consumer action to apply
+     */
+    void foreach(Consumer<? super T> consumer);
+
+    /**
+     * @return the size of the set
+     */
+    int size();
+
+    /**
+     * @return true if the set is empty, false otherwise
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return an instance of {@link Stream} holding the elements of the set
+     */
+    default Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Get an empty set instance.
+     *
+     * @param <T> type of elements
+     * @return an empty set
+     */
+    static <T> ImmutableSet<T> empty() {
+        return HashTrieSet.empty();
+    }
+
+    /**
+     * Factory method to build an ImmutableSet from a given collection.
+     *
+     * @param collection collection to build from
+     * @param <T> type of elements in the collection
+     * @return a new ImmutableSet of the elements in the given collection
+     */
+    static <T> ImmutableSet<T> of(final Collection<? extends T> collection) {
+        ImmutableSet<T> result = empty();
+        for (final T element : collection) result = result.add(element);
+        return result;
+    }
+
+    /**
+     * Factory method to build an ImmutableSet from multiple arguments.
+     *
+     * @param a elements to build from
+     * @param <T> type of elements
+     * @return a new ImmutableSet of the given elements
+     */
+    @SafeVarargs
+    static <T> ImmutableSet<T> of(final T... a) {
+        return of(Arrays.asList(a));
+    }
+}
@@ -0,0 +1,456 @@
+package edu.immutables.trie;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Persistent radix trie.
+ * <p>
+ * Chains of single-child nodes are compressed: every edge carries a
+ * label of one or more characters and every node other than the root
+ * either ends a key or has at least two children. Children are kept
+ * sorted by the first character of their label and found by binary
+ * search.
+ * </p>
+ * <p>
+ * Updates copy the nodes on the path to the key only. Adding a key that
+ * ends inside a label splits the edge, removing one merges a node left
+ * with a single child back into that child, so the shape of the trie
+ * only depends on its keys.
+ * </p>
+ * <p>
+ * Labels are stored like compact strings: one byte per character while
+ * every key is Latin-1, which host names, paths and identifiers usually
+ * are. The first key with a wider character re-encodes every label of
+ * that version with two bytes per character, once, and its updates keep
+ * the wide encoding even after the key is removed. Nodes that end a key
+ * without children, most of them, only hold their label.
+ * </p>
+ */
+final class RadixTrie implements Trie {
+    static final RadixTrie EMPTY = new RadixTrie(Node.ROOT, 0, false);
+
+    private final Node root;
+    private final int size;
+    /**
+     * Whether labels take two bytes per character.
+     */
+    private final boolean wide;
+
+    private RadixTrie(final Node root, final int size, final boolean wide) {
+        this.root = root;
+        this.size = size;
+        this.wide = wide;
+    }
+
+    @Override
+    public boolean contains(final String key) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            final int index = node.find(key.charAt(i), wide);
+            if (index < 0) return false;
+            node = node.children()[index];
+            if (!node.labelMatches(key, i, wide)) return false;
+            i += node.length(wide);
+        }
+        return node.terminal();
+    }
+
+    @Override
+    public Trie add(final String key) {
+        Objects.requireNonNull(key);
+        if (!wide && !isLatin1(key)) return new RadixTrie(add(root.widen(), key, 0, true), size + 1, true);
+        final Node updated = add(root, key, 0, wide);
+        return updated == root ? this : new RadixTrie(updated, size + 1, wide);
+    }
+
+    @Override
+    public Trie remove(final String key) {
+        final Node updated = remove(root, key, 0, true, wide);
+        if (updated == root) return this;
+        return size == 1 ? EMPTY : new RadixTrie(updated, size - 1, wide);
+    }
+
+    private static boolean isLatin1(final String key) {
+        for (int i = 0; i < key.length(); ++i) {
+            if (key.charAt(i) > 0xFF) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param i number of characters of the key matched by the path down to the node
+     */
+    private static Node add(final Node node, final String key, final int i, final boolean wide) {
+        if (i == key.length()) return node.terminal() ? node : node.withTerminal(true);
+        final int index = node.find(key.charAt(i), wide);
+        if (index < 0) return node.withInsertedChild(-index - 1, new Leaf(encode(key, i, wide)));
+        final Node child = node.children()[index];
+        final int common = child.commonPrefix(key, i, wide);
+        if (common == child.length(wide)) {
+            final Node updated = add(child, key, i + common, wide);
+            return updated == child ? node : node.withChild(index, updated);
+        }
+        final int cut = wide ? common << 1 : common;
+        final Node split = new Inner(Arrays.copyOf(child.label, cut), false,
+                new Node[]{child.withLabel(Arrays.copyOfRange(child.label, cut, child.label.length))});
+        return node.withChild(index, add(split, key, i + common, wide));
+    }
+
+    /**
+     * @param i number of characters of the key matched by the path down to the node
+     * @return the updated node, null if it no longer holds any key
+     */
+    private static Node remove(final Node node, final String key, final int i, final boolean isRoot,
+                               final boolean wide) {
+        final Node[] children = node.children();
+        if (i == key.length()) {
+            if (!node.terminal()) return node;
+            if (isRoot) return node.withTerminal(false);
+            if (children.length == 0) return null;
+            if (children.length == 1) return children[0].withLabelPrefix(node.label);
+            return node.withTerminal(false);
+        }
+        final int index = node.find(key.charAt(i), wide);
+        if (index < 0) return node;
+        final Node child = children[index];
+        if (!child.labelMatches(key, i, wide)) return node;
+        final Node updated = remove(child, key, i + child.length(wide), false, wide);
+        if (updated == child) return node;
+        if (updated != null) return node.withChild(index, updated);
+        if (!isRoot && !node.terminal() && children.length == 2) {
+            return children[1 - index].withLabelPrefix(node.label);
+        }
+        return node.withoutChild(index);
+    }
+
+    /**
+     * @return the characters of the key from index i, one or two bytes each
+     */
+    private static byte[] encode(final String key, final int i, final boolean wide) {
+        final byte[] label = new byte[wide ? (key.length() - i) << 1 : key.length() - i];
+        for (int j = 0; j < key.length() - i; ++j) {
+            final char c = key.charAt(i + j);
+            if (wide) {
+                label[j << 1] = (byte) (c >>> 8);
+                label[(j << 1) + 1] = (byte) c;
+            } else {
+                label[j] = (byte) c;
+            }
+        }
+        return label;
+    }
+
+    @Override
+    public Stream<String> prefix(final String prefix) {
+        final Iterator<String> iterator = prefixIterator(prefix);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+                        | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    private Iterator<String> prefixIterator(final String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            final int index = node.find(prefix.charAt(i), wide);
+            if (index < 0) return Collections.emptyIterator();
+            node = node.children()[index];
+            final int common = node.commonPrefix(prefix, i, wide);
+            if (common == node.length(wide)) {
+                i += common;
+            } else if (i + common == prefix.length()) {
+                // the prefix ends inside the label, every key below the node matches
+                return new Cursor(node, prefix.substring(0, i) + node.label(wide), wide);
+            } else {
+                return Collections.emptyIterator();
+            }
+        }
+        return new Cursor(node, prefix, wide);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Cursor(root, "", wide);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    Node root() {
+        return root;
+    }
+
+    boolean wide() {
+        return wide;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Trie)) return false;
+        final Trie other = (Trie) o;
+        if (size != other.size()) return false;
+        final Iterator<String> otherIterator = other.iterator();
+        for (final String key : this) {
+            if (!key.equals(otherIterator.next())) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (final String key : this) hash += key.hashCode();
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (final String key : this) joiner.add(key);
+        return joiner.toString();
+    }
+
+    abstract static class Node {
+        static final Node[] NO_CHILDREN = new Node[0];
+        static final Node ROOT = new Inner(new byte[0], false, NO_CHILDREN);
+
+        final byte[] label;
+
+        Node(final byte[] label) {
+            this.label = label;
+        }
+
+        abstract boolean terminal();
+
+        abstract Node[] children();
+
+        static Node of(final byte[] label, final boolean terminal, final Node[] children) {
+            return terminal && children.length == 0 ? new Leaf(label) : new Inner(label, terminal, children);
+        }
+
+        int length(final boolean wide) {
+            return wide ? label.length >> 1 : label.length;
+        }
+
+        char charAt(final int i, final boolean wide) {
+            if (wide) return (char) ((label[i << 1] & 0xFF) << 8 | label[(i << 1) + 1] & 0xFF);
+            return (char) (label[i] & 0xFF);
+        }
+
+        String label(final boolean wide) {
+            final StringBuilder builder = new StringBuilder(length(wide));
+            appendLabel(builder, wide);
+            return builder.toString();
+        }
+
+        void appendLabel(final StringBuilder builder, final boolean wide) {
+            for (int i = 0, length = length(wide); i < length; ++i) builder.append(charAt(i, wide));
+        }
+
+        /**
+         * @return index of the child whose label starts with the character,
+         * or (-(insertion point) - 1) if there is none
+         */
+        int find(final char c, final boolean wide) {
+            final Node[] children = children();
+            int lo = 0;
+            int hi = children.length - 1;
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                final char first = children[mid].charAt(0, wide);
+                if (first < c) {
+                    lo = mid + 1;
+                } else if (first > c) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+
+        /**
+         * @return length of the common prefix of the label and the key from index i
+         */
+        int commonPrefix(final String key, final int i, final boolean wide) {
+            final int limit = Math.min(length(wide), key.length() - i);
+            int common = 0;
+            while (common < limit && charAt(common, wide) == key.charAt(i + common)) ++common;
+            return common;
+        }
+
+        boolean labelMatches(final String key, final int i, final boolean wide) {
+            final int length = length(wide);
+            return key.length() - i >= length && commonPrefix(key, i, wide) == length;
+        }
+
+        /**
+         * @return copy of the subtree with two bytes per character
+         */
+        Node widen() {
+            final byte[] wide = new byte[label.length << 1];
+            for (int i = 0; i < label.length; ++i) wide[(i << 1) + 1] = label[i];
+            final Node[] children = children();
+            final Node[] copy = children.length == 0 ? NO_CHILDREN : new Node[children.length];
+            for (int i = 0; i < copy.length; ++i) copy[i] = children[i].widen();
+            return of(wide, terminal(), copy);
+        }
+
+        Node withTerminal(final boolean terminal) {
+            return of(label, terminal, children());
+        }
+
+        Node withLabel(final byte[] label) {
+            return of(label, terminal(), children());
+        }
+
+        Node withLabelPrefix(final byte[] prefix) {
+            final byte[] joined = Arrays.copyOf(prefix, prefix.length + label.length);
+            System.arraycopy(label, 0, joined, prefix.length, label.length);
+            return withLabel(joined);
+        }
+
+        Node withChild(final int index, final Node child) {
+            final Node[] copy = children().clone();
+            copy[index] = child;
+            return of(label, terminal(), copy);
+        }
+
+        Node withInsertedChild(final int index, final Node child) {
+            final Node[] children = children();
+            final Node[] copy = new Node[children.length + 1];
+            System.arraycopy(children, 0, copy, 0, index);
+            copy[index] = child;
+            System.arraycopy(children, index, copy, index + 1, children.length - index);
+            return of(label, terminal(), copy);
+        }
+
+        Node withoutChild(final int index) {
+            final Node[] children = children();
+            final Node[] copy = new Node[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, index);
+            System.arraycopy(children, index + 1, copy, index, copy.length - index);
+            return of(label, terminal(), copy);
+        }
+    }
+
+    /**
+     * Node ending a key without children.
+     */
+    static final class Leaf extends Node {
+        Leaf(final byte[] label) {
+            super(label);
+        }
+
+        @Override
+        boolean terminal() {
+            return true;
+        }
+
+        @Override
+        Node[] children() {
+            return NO_CHILDREN;
+        }
+    }
+
+    static final class Inner extends Node {
+        final boolean terminal;
+        final Node[] children;
+
+        Inner(final byte[] label, final boolean terminal, final Node[] children) {
+            super(label);
+            this.terminal = terminal;
+            this.children = children;
+        }
+
+        @Override
+        boolean terminal() {
+            return terminal;
+        }
+
+        @Override
+        Node[] children() {
+            return children;
+        }
+    }
+
+    /**
+     * Depth first iterator, a node's key comes before the keys of its
+     * children, which yields ascending order. The path builder holds the
+     * characters from the root down to the current node.
+     */
+    private static final class Cursor implements Iterator<String> {
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        private final StringBuilder path;
+        private final boolean wide;
+        private String next;
+
+        Cursor(final Node start, final String startPath, final boolean wide) {
+            this.wide = wide;
+            path = new StringBuilder(startPath);
+            stack.push(new Frame(start, path.length()));
+            advance();
+        }
+
+        private void advance() {
+            while (!stack.isEmpty()) {
+                final Frame frame = stack.peek();
+                if (frame.child < 0) {
+                    frame.child = 0;
+                    if (frame.node.terminal()) {
+                        path.setLength(frame.length);
+                        next = path.toString();
+                        return;
+                    }
+                }
+                if (frame.child == frame.node.children().length) {
+                    stack.pop();
+                    continue;
+                }
+                final Node child = frame.node.children()[frame.child++];
+                path.setLength(frame.length);
+                child.appendLabel(path, wide);
+                stack.push(new Frame(child, path.length()));
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (next == null) throw new NoSuchElementException();
+            final String result = next;
+            advance();
+            return result;
+        }
+
+        private static final class Frame {
+            final Node node;
+            final int length;
+            int child = -1;
+
+            Frame(final Node node, final int length) {
+                this.node = node;
+                this.length = length;
+            }
+        }
+    }
+}
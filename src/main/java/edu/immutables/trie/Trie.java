@@ -0,0 +1,113 @@
+package edu.immutables.trie;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Interface representing Immutable sets of strings held in a trie.
+ * <p>
+ * Lookups and updates walk the characters of the key once, so they cost
+ * O(key length) whatever the size of the set, and keys sharing a prefix
+ * store that prefix once. Strings are kept in ascending
+ * {@link String#compareTo} order. Null strings are not supported.
+ * </p>
+ */
+public interface Trie extends Iterable<String> {
+
+    /**
+     * Test if the trie contains a string.
+     *
+     * @param key target string
+     * @return true if the trie contains the string, false otherwise
+     */
+    boolean contains(String key);
+
+    /**
+     * Add a string to the trie.
+     *
+     * @param key string to add
+     * @return a new trie with the string added
+     */
+    Trie add(String key);
+
+    /**
+     * Remove a string from the trie.
+     *
+     * @param key string to remove
+     * @return a new trie with the string removed
+     */
+    Trie remove(String key);
+
+    /**
+     * Get the strings starting with a prefix, in ascending order.
+     * <p>
+     * Reaching the prefix costs O(prefix length), the strings are then
+     * produced lazily as the stream is consumed.
+     * </p>
+     *
+     * @param prefix prefix of the strings, the empty string matches every string
+     * @return an instance of {@link Stream} holding the strings starting with the prefix
+     */
+    Stream<String> prefix(String prefix);
+
+    /**
+     * @return the number of strings in the trie
+     */
+    int size();
+
+    /**
+     * @return true if the trie is empty, false otherwise
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    default Spliterator<String> spliterator() {
+        return Spliterators.spliterator(iterator(), size(),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT
+                        | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * @return an instance of {@link Stream} holding the strings of the trie in ascending order
+     */
+    default Stream<String> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Get an empty trie instance.
+     *
+     * @return an empty trie
+     */
+    static Trie empty() {
+        return RadixTrie.EMPTY;
+    }
+
+    /**
+     * Factory method to build a Trie from a given collection.
+     *
+     * @param collection collection to build from
+     * @return a new Trie of the strings in the given collection
+     */
+    static Trie of(final Collection<String> collection) {
+        Trie result = empty();
+        for (final String key : collection) result = result.add(key);
+        return result;
+    }
+
+    /**
+     * Factory method to build a Trie from multiple arguments.
+     *
+     * @param keys strings to build from
+     * @return a new Trie of the given strings
+     */
+    static Trie of(final String... keys) {
+        return of(Arrays.asList(keys));
+    }
+}
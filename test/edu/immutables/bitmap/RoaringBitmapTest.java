@@ -0,0 +1,196 @@
+package edu.immutables.bitmap;
+
+import edu.immutables.bst.Tree;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class RoaringBitmapTest {
+
+    @Test
+    public void addAndContains() throws Exception {
+        final RoaringBitmap bitmap = RoaringBitmap.empty().add(3).add(-1).add(70_000).add(3);
+        assertEquals(3, bitmap.size());
+        assertTrue(bitmap.contains(-1));
+        assertTrue(bitmap.contains(70_000));
+        assertFalse(bitmap.contains(70_001));
+        assertArrayEquals(new int[]{-1, 3, 70_000}, bitmap.toArray());
+        assertEquals("-1 3 70000", bitmap.toString());
+    }
+
+    @Test
+    public void removeKeepsOldVersion() throws Exception {
+        final RoaringBitmap bitmap = RoaringBitmap.of(5, 1, 100_000);
+        final RoaringBitmap removed = bitmap.remove(100_000);
+        assertTrue(bitmap.contains(100_000));
+        assertArrayEquals(new int[]{1, 5}, removed.toArray());
+        assertSame(removed, removed.remove(100_000));
+        assertTrue(removed.remove(1).remove(5).isEmpty());
+    }
+
+    @Test
+    public void signedOrder() throws Exception {
+        final int[] values = {Integer.MIN_VALUE, -70_000, -1, 0, 1, 65_535, 65_536, Integer.MAX_VALUE};
+        assertArrayEquals(values, RoaringBitmap.of(values).toArray());
+        assertArrayEquals(values, RoaringBitmap.of(values).stream().toArray());
+    }
+
+    @Test
+    public void denseChunksSwitchContainers() throws Exception {
+        RoaringBitmap bitmap = RoaringBitmap.empty();
+        for (int i = 0; i < 10_000; ++i) bitmap = bitmap.add(2 * i);
+        assertEquals(10_000, bitmap.size());
+        assertTrue(bitmap.contains(19_998));
+        assertFalse(bitmap.contains(19_999));
+        for (int i = 0; i < 9_000; ++i) bitmap = bitmap.remove(2 * i);
+        assertEquals(1_000, bitmap.size());
+        assertEquals(IntStream.range(9_000, 10_000).map(i -> 2 * i).boxed().collect(Collectors.toList()),
+                bitmap.stream().boxed().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void setOperations() throws Exception {
+        final Random random = new Random(17);
+        for (int round = 0; round < 20; ++round) {
+            final int[] a = random.ints(random.nextInt(30_000), -200_000, 200_000).toArray();
+            final int[] b = random.ints(random.nextInt(30_000), -200_000, 200_000).toArray();
+            final TreeSet<Integer> setA = new TreeSet<>();
+            final TreeSet<Integer> setB = new TreeSet<>();
+            for (final int value : a) setA.add(value);
+            for (final int value : b) setB.add(value);
+            final RoaringBitmap x = round % 2 == 0 ? RoaringBitmap.of(a) : RoaringBitmap.of(a).runOptimize();
+            final RoaringBitmap y = RoaringBitmap.of(b);
+
+            final TreeSet<Integer> union = new TreeSet<>(setA);
+            union.addAll(setB);
+            final TreeSet<Integer> intersection = new TreeSet<>(setA);
+            intersection.retainAll(setB);
+            final TreeSet<Integer> difference = new TreeSet<>(setA);
+            difference.removeAll(setB);
+
+            assertEquals(RoaringBitmap.of(union), x.or(y));
+            assertEquals(RoaringBitmap.of(intersection), x.and(y));
+            assertEquals(RoaringBitmap.of(difference), x.andNot(y));
+            assertEquals(union.size(), x.or(y).size());
+            assertEquals(intersection.size(), x.and(y).size());
+            assertEquals(difference.size(), x.andNot(y).size());
+        }
+    }
+
+    @Test
+    public void denseSetOperations() throws Exception {
+        final RoaringBitmap evens = RoaringBitmap.of(IntStream.range(0, 100_000).map(i -> 2 * i));
+        final RoaringBitmap range = RoaringBitmap.of(IntStream.range(50_000, 150_000));
+        assertEquals(150_000, evens.or(range).size());
+        assertEquals(50_000, evens.and(range).size());
+        assertEquals(50_000, evens.andNot(range).size());
+        assertEquals(evens.and(range), range.runOptimize().and(evens));
+        assertTrue(evens.andNot(evens).isEmpty());
+        assertSame(evens, evens.or(RoaringBitmap.empty()));
+        assertSame(evens, evens.andNot(RoaringBitmap.of(1, 3)));
+    }
+
+    @Test
+    public void runOptimize() throws Exception {
+        final RoaringBitmap range = RoaringBitmap.of(IntStream.range(-10, 200_000));
+        final RoaringBitmap optimized = range.runOptimize();
+        assertEquals(range, optimized);
+        assertTrue(optimized.contains(-10));
+        assertTrue(optimized.contains(199_999));
+        assertFalse(optimized.contains(200_000));
+        assertArrayEquals(range.toArray(), optimized.stream().toArray());
+        final RoaringBitmap updated = optimized.remove(100).add(300_000);
+        assertFalse(updated.contains(100));
+        assertTrue(updated.contains(300_000));
+        assertEquals(range.size(), updated.size());
+        assertSame(optimized, optimized.add(5));
+    }
+
+    @Test
+    public void treeInterop() throws Exception {
+        final Tree<Integer> tree = Tree.of(Arrays.asList(5, -3, 8, 100_000));
+        final RoaringBitmap bitmap = RoaringBitmap.of(tree);
+        assertArrayEquals(new int[]{-3, 5, 8, 100_000}, bitmap.toArray());
+        assertEquals(Arrays.asList(-3, 5, 8, 100_000), bitmap.toTree().toList());
+    }
+
+    /**
+     * A few runs of random lengths within the first 20,000 values.
+     */
+    private static TreeSet<Integer> randomRuns(final Random random) {
+        final TreeSet<Integer> values = new TreeSet<>();
+        for (int run = random.nextInt(20); run >= 0; --run) {
+            final int start = random.nextInt(20_000);
+            for (int value = start, end = start + random.nextInt(2_000); value <= end; ++value) values.add(value);
+        }
+        return values;
+    }
+
+    @Test
+    public void runUpdatesKeepRuns() throws Exception {
+        final Random random = new Random(23);
+        final TreeSet<Integer> expected = randomRuns(random);
+        RoaringBitmap bitmap = RoaringBitmap.of(expected).runOptimize();
+        assertTrue(bitmap.container(0) instanceof RunContainer);
+        for (int i = 0; i < 2_000; ++i) {
+            final int value = random.nextInt(22_000);
+            if (random.nextBoolean()) {
+                expected.add(value);
+                bitmap = bitmap.add(value);
+            } else {
+                expected.remove(value);
+                bitmap = bitmap.remove(value);
+            }
+            assertTrue(bitmap.container(0) instanceof RunContainer);
+        }
+        assertEquals(RoaringBitmap.of(expected), bitmap);
+        assertEquals(expected.size(), bitmap.size());
+
+        final RoaringBitmap range = RoaringBitmap.of(IntStream.range(0, 1_000)).runOptimize();
+        assertEquals(RoaringBitmap.of(IntStream.range(0, 1_001)), range.add(1_000));
+        assertEquals(RoaringBitmap.of(IntStream.range(1, 1_000)), range.remove(0));
+        assertEquals(range.remove(501), range.remove(500).remove(501).add(500));
+        assertTrue(range.remove(500).container(0) instanceof RunContainer);
+        assertTrue(range.remove(0).remove(1).remove(2).add(1).container(0) instanceof RunContainer);
+    }
+
+    @Test
+    public void runUpdatesExpandOnceRunsAreLarger() throws Exception {
+        RoaringBitmap bitmap = RoaringBitmap.of(IntStream.range(0, 100)).runOptimize();
+        for (int value = 1; value < 100; value += 2) bitmap = bitmap.remove(value);
+        assertTrue(bitmap.container(0) instanceof ArrayContainer);
+        assertEquals(RoaringBitmap.of(IntStream.range(0, 50).map(i -> 2 * i)), bitmap);
+    }
+
+    @Test
+    public void runSetOperationsMergeRuns() throws Exception {
+        final Random random = new Random(29);
+        for (int round = 0; round < 50; ++round) {
+            final TreeSet<Integer> setA = randomRuns(random);
+            final TreeSet<Integer> setB = randomRuns(random);
+            final RoaringBitmap x = RoaringBitmap.of(setA).runOptimize();
+            final RoaringBitmap y = RoaringBitmap.of(setB).runOptimize();
+
+            final TreeSet<Integer> union = new TreeSet<>(setA);
+            union.addAll(setB);
+            final TreeSet<Integer> intersection = new TreeSet<>(setA);
+            intersection.retainAll(setB);
+            final TreeSet<Integer> difference = new TreeSet<>(setA);
+            difference.removeAll(setB);
+
+            assertEquals(RoaringBitmap.of(union), x.or(y));
+            assertEquals(RoaringBitmap.of(intersection), x.and(y));
+            assertEquals(RoaringBitmap.of(difference), x.andNot(y));
+            assertEquals(union.size(), x.or(y).size());
+            assertEquals(intersection.size(), x.and(y).size());
+            assertEquals(difference.size(), x.andNot(y).size());
+            assertTrue(x.or(y).container(0) instanceof RunContainer);
+        }
+    }
+}
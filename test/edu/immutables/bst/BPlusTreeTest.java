@@ -0,0 +1,139 @@
+package edu.immutables.bst;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class BPlusTreeTest extends TreeTest {
+
+    private static final int ORDER = 4;
+
+    @Override
+    protected Tree<Integer> empty() {
+        return BPlusTree.empty(ORDER);
+    }
+
+    @Override
+    protected Tree<Integer> of(final List<Integer> list) {
+        return BPlusTree.of(list, ORDER);
+    }
+
+    @Test
+    public void randomAddAndRemove() throws Exception {
+        final Random random = new Random(42);
+        final TreeSet<Integer> expected = new TreeSet<>();
+        Tree<Integer> tree = empty();
+        for (int i = 0; i < 5_000; ++i) {
+            final int element = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                expected.remove(element);
+                tree = tree.remove(element);
+            } else {
+                expected.add(element);
+                tree = tree.add(element);
+            }
+            assertEquals(expected.size(), tree.size());
+        }
+        assertEquals(new ArrayList<>(expected), tree.toList());
+        for (int i = 0; i < 500; ++i) assertEquals(expected.contains(i), tree.contains(i));
+    }
+
+    @Test
+    public void removeEverything() throws Exception {
+        Tree<Integer> tree = of(IntStream.range(0, 1_000).boxed().toArray(Integer[]::new));
+        for (int i = 0; i < 1_000; i += 2) tree = tree.remove(i);
+        for (int i = 999; i > 0; i -= 2) tree = tree.remove(i);
+        assertEquals(0, tree.size());
+        assertFalse(tree.iterator().hasNext());
+        assertEquals(Arrays.asList(5), tree.add(5).toList());
+    }
+
+    @Test
+    public void olderVersionsAreUnchanged() throws Exception {
+        final Tree<Integer> tree = of(IntStream.range(0, 100).boxed().toArray(Integer[]::new));
+        final Tree<Integer> added = tree.add(1_000);
+        final Tree<Integer> removed = tree.remove(50);
+        assertEquals(100, tree.size());
+        assertTrue(tree.contains(50));
+        assertFalse(tree.contains(1_000));
+        assertTrue(added.contains(1_000));
+        assertFalse(removed.contains(50));
+    }
+
+    @Test
+    public void addAndRemoveMissingReturnSameTree() throws Exception {
+        final Tree<Integer> tree = of(1, 2, 3);
+        assertSame(tree, tree.add(2));
+        assertSame(tree, tree.remove(4));
+    }
+
+    @Test
+    public void ofSortedWithDefaultOrder() throws Exception {
+        final Tree<Integer> tree = BPlusTree.ofSorted(IntStream.range(0, 100_000).boxed().iterator());
+        assertEquals(100_000, tree.size());
+        assertEquals(IntStream.range(0, 100_000).boxed().collect(Collectors.toList()), tree.toList());
+        assertTrue(tree.contains(77_777));
+        assertFalse(tree.contains(-1));
+    }
+
+    @Test
+    public void unionWithBinaryTree() throws Exception {
+        final Tree<Integer> union = of(1, 3, 5).union(Tree.of(2, 3, 4));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), union.toList());
+        assertEquals(of(1, 2, 3, 4, 5), union);
+    }
+
+    @Test
+    public void comparatorOrdering() throws Exception {
+        final Tree<String> tree = Tree.of(String.CASE_INSENSITIVE_ORDER, Arrays.asList("b", "A", "a", "C"));
+        assertEquals(Arrays.asList("A", "b", "C"), tree.toList());
+        assertTrue(tree.contains("B"));
+        assertEquals(Arrays.asList("A", "b", "C", "d"), tree.add("d").add("D").toList());
+        assertEquals(Arrays.asList("b", "C"), tree.remove("a").toList());
+        assertSame(String.CASE_INSENSITIVE_ORDER, tree.comparator());
+    }
+
+    @Test
+    public void reverseOrderUnion() throws Exception {
+        final Tree<Integer> tree = Tree.of(Comparator.<Integer>reverseOrder(), Arrays.asList(1, 3));
+        assertEquals(Arrays.asList(4, 3, 2, 1), tree.union(Tree.of(Comparator.<Integer>reverseOrder(), Arrays.asList(2, 4))).toList());
+        assertEquals(Arrays.asList(3, 2, 1), tree.union(Tree.of(2)).toList());
+    }
+
+    @Test
+    public void spliteratorReportsComparator() throws Exception {
+        final Tree<String> tree = Tree.of(String.CASE_INSENSITIVE_ORDER, Arrays.asList("b", "a", "C"));
+        assertSame(String.CASE_INSENSITIVE_ORDER, tree.spliterator().getComparator());
+        assertNull(of(1, 2).spliterator().getComparator());
+        assertEquals(Arrays.asList("a", "b", "C"), tree.parallelStream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void toStringKeepsEmptyElements() throws Exception {
+        assertEquals(" a", BPlusTree.of(Comparator.<String>naturalOrder(), Arrays.asList("", "a")).toString());
+        assertEquals(" a b", Tree.of(Comparator.<String>naturalOrder(), Arrays.asList("b", "", "a")).toString());
+    }
+
+    @Test
+    public void mapMonotonicOnlySeesElements() throws Exception {
+        Tree<Integer> tree = of(IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+        for (int i = 0; i < 100; i += 3) tree = tree.remove(i);
+        final Tree<Integer> remaining = tree;
+        final Tree<Integer> mapped = tree.mapMonotonic(element -> {
+            assertTrue(String.valueOf(element), remaining.contains(element));
+            return element * 2;
+        });
+        assertEquals(tree.toList().stream().map(element -> element * 2).collect(Collectors.toList()), mapped.toList());
+        for (final Integer element : tree) assertTrue(mapped.contains(element * 2));
+        assertEquals(tree.size(), mapped.remove(2).add(2).size());
+    }
+}
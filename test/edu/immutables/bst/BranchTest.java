@@ -0,0 +1,137 @@
+package edu.immutables.bst;
+
+import org.junit.Test;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class BranchTest {
+
+    /**
+     * Count the nodes of a tree by layout class.
+     */
+    private static Map<Class<?>, Integer> layout(final Tree<?> tree) {
+        final Map<Class<?>, Integer> counts = new HashMap<>();
+        final ArrayDeque<Tree<?>> stack = new ArrayDeque<>();
+        stack.push(tree);
+        while (!stack.isEmpty()) {
+            final Tree<?> node = stack.pop();
+            counts.merge(node.getClass(), 1, Integer::sum);
+            if (node instanceof Branch) {
+                stack.push(((Branch<?>) node).left());
+                stack.push(((Branch<?>) node).right());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Copy of a tree where every node keeps both children, as before nodes had their own layouts.
+     */
+    private static Tree<Integer> allFull(final Tree<Integer> tree) {
+        if (!(tree instanceof Branch)) return tree;
+        final Branch<Integer> branch = (Branch<Integer>) tree;
+        return new Branch.Full<>(branch.value, allFull(branch.left()), allFull(branch.right()));
+    }
+
+    /**
+     * Bytes taken by the nodes of a tree, the elements excluded.
+     */
+    private static long nodeBytes(final Tree<?> tree) {
+        final GraphLayout graph = GraphLayout.parseInstance(tree);
+        long bytes = 0;
+        for (final Class<?> layout : graph.getClasses()) {
+            if (Tree.class.isAssignableFrom(layout)) bytes += graph.getClassSizes().count(layout);
+        }
+        return bytes;
+    }
+
+    private static Tree<Integer> randomTransientTree(final int size) {
+        final List<Integer> elements = IntStream.range(0, size).boxed().collect(Collectors.toList());
+        Collections.shuffle(elements, new Random(5));
+        final TransientTree<Integer> editor = Tree.<Integer>empty().asTransient();
+        for (final Integer element : elements) editor.add(element);
+        return editor.persistent();
+    }
+
+    @Test
+    public void emptyTreeIsShared() throws Exception {
+        assertSame(Tree.<Integer>empty(), Tree.<String>empty());
+        assertSame(Tree.empty(), Tree.of(1).remove(1));
+        assertSame(Tree.empty(), Tree.of(1, 2, 3).map(Object::toString).remove("1").remove("2").remove("3"));
+    }
+
+    @Test
+    public void balancedTreeUsesLeaves() throws Exception {
+        final List<Integer> elements = IntStream.range(0, 1_023).boxed().collect(Collectors.toList());
+        final Map<Class<?>, Integer> counts = layout(Tree.of(elements));
+        assertEquals(Integer.valueOf(512), counts.get(Branch.Leaf.class));
+        assertEquals(Integer.valueOf(511), counts.get(Branch.Full.class));
+        assertEquals(Integer.valueOf(1_024), counts.get(Tip.class));
+        assertEquals(3, counts.size());
+    }
+
+    @Test
+    public void updatesPickLeafOrFull() throws Exception {
+        assertTrue(Tree.singleton(1) instanceof Branch.Leaf);
+        assertTrue(Tree.of(1).add(2) instanceof Branch.Full);
+        assertTrue(((Branch<Integer>) Tree.of(1).add(2)).left() instanceof Tip);
+        assertTrue(Tree.of(2).add(1) instanceof Branch.Full);
+        assertTrue(Tree.of(2).add(1).add(3).remove(3) instanceof Branch.Full);
+        assertTrue(Tree.of(2).add(1).remove(1) instanceof Branch.Leaf);
+    }
+
+    @Test
+    public void layoutsBehaveAlike() throws Exception {
+        final Tree<Integer> tree = Tree.of(Arrays.asList(4, 2, 6, 1, 5, 7)).add(8).add(3).remove(6);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 7, 8), tree.toList());
+        assertEquals(7, tree.size());
+        assertEquals(30, tree.hashCode());
+        for (int i = 0; i < 10; ++i) assertEquals(tree.toList().contains(i), tree.contains(i));
+        assertEquals(tree.toList(), tree.stream().collect(Collectors.toList()));
+        assertEquals(Tree.of(2, 1).hashCode(), Tree.of(2).add(1).hashCode());
+        assertEquals(Tree.singleton(2).add(1), Tree.of(2).add(1));
+    }
+
+    @Test
+    public void transientBuiltTreeKeepsLeavesLean() throws Exception {
+        final Tree<Integer> tree = randomTransientTree(10_000);
+        final ArrayDeque<Tree<Integer>> stack = new ArrayDeque<>();
+        stack.push(tree);
+        while (!stack.isEmpty()) {
+            final Tree<Integer> node = stack.pop();
+            if (node instanceof Branch) {
+                final Branch<Integer> branch = (Branch<Integer>) node;
+                if (branch.left() instanceof Tip && branch.right() instanceof Tip) {
+                    assertTrue(branch instanceof Branch.Leaf);
+                }
+                stack.push(branch.left());
+                stack.push(branch.right());
+            }
+        }
+        assertTrue(layout(tree).get(Branch.Leaf.class) > 3_000);
+    }
+
+    @Test
+    public void leavesTakeHalfTheMemoryOfFullNodes() throws Exception {
+        final long leaf = ClassLayout.parseClass(Branch.Leaf.class).instanceSize();
+        final long full = ClassLayout.parseClass(Branch.Full.class).instanceSize();
+        assertTrue(leaf + " vs " + full, 2 * leaf <= full);
+        Tree<Integer> tree = Tree.empty();
+        for (final Integer element : randomTransientTree(10_000)) tree = tree.add(element);
+        final long lean = nodeBytes(tree);
+        final long fullOnly = nodeBytes(allFull(tree));
+        assertTrue(lean + " vs " + fullOnly, lean < fullOnly);
+    }
+}
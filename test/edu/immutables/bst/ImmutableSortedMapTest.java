@@ -0,0 +1,113 @@
+package edu.immutables.bst;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ImmutableSortedMapTest {
+
+    @Test
+    public void putAndGet() throws Exception {
+        final ImmutableSortedMap<String, Integer> map = ImmutableSortedMap.<String, Integer>empty()
+                .put("b", 2).put("a", 1).put("c", 3);
+        final ImmutableSortedMap<String, Integer> updated = map.put("a", 10);
+        assertEquals(3, map.size());
+        assertEquals(Integer.valueOf(1), map.get("a"));
+        assertEquals(Integer.valueOf(10), updated.get("a"));
+        assertNull(map.get("d"));
+        assertEquals(Integer.valueOf(0), map.getOrDefault("d", 0));
+        assertSame(updated, updated.put("a", updated.get("a")));
+        assertEquals("{a=1, b=2, c=3}", map.toString());
+    }
+
+    @Test
+    public void removeKeepsOldVersion() throws Exception {
+        final ImmutableSortedMap<Integer, String> map = ImmutableSortedMap.<Integer, String>empty()
+                .put(1, "one").put(2, "two");
+        final ImmutableSortedMap<Integer, String> removed = map.remove(1);
+        assertTrue(map.containsKey(1));
+        assertFalse(removed.containsKey(1));
+        assertSame(removed, removed.remove(1));
+        assertTrue(removed.remove(2).isEmpty());
+    }
+
+    @Test
+    public void compute() throws Exception {
+        final ImmutableSortedMap<String, Integer> map = ImmutableSortedMap.<String, Integer>empty().put("a", 1);
+        assertEquals(Integer.valueOf(2), map.computeIfPresent("a", (k, v) -> v + 1).get("a"));
+        assertSame(map, map.computeIfPresent("b", (k, v) -> 1));
+        assertEquals(Integer.valueOf(5), map.compute("b", (k, v) -> v == null ? 5 : v).get("b"));
+        assertTrue(map.computeIfPresent("a", (k, v) -> null).isEmpty());
+        assertSame(map, map.compute("b", (k, v) -> null));
+    }
+
+    @Test
+    public void comparator() throws Exception {
+        final ImmutableSortedMap<String, Integer> map = ImmutableSortedMap.<String, Integer>empty(
+                Comparator.reverseOrder()).put("a", 1).put("c", 3).put("b", 2);
+        assertEquals(Arrays.asList("c", "b", "a"),
+                map.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("c", "b"),
+                map.range("c", "a").map(Map.Entry::getKey).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void range() throws Exception {
+        ImmutableSortedMap<Integer, Integer> map = ImmutableSortedMap.empty();
+        for (int i = 0; i < 1_000; i += 2) map = map.put(i, -i);
+        final List<Integer> keys = map.range(101, 111).map(Map.Entry::getKey).collect(Collectors.toList());
+        assertEquals(Arrays.asList(102, 104, 106, 108, 110), keys);
+        assertEquals(0, map.range(2_000, 3_000).count());
+        assertEquals(0, map.range(10, 10).count());
+        assertEquals(500, map.range(-1, 1_000).count());
+    }
+
+    @Test
+    public void randomOperationsStayBalanced() throws Exception {
+        final Random random = new Random(5);
+        final TreeMap<Integer, Integer> expected = new TreeMap<>();
+        ImmutableSortedMap<Integer, Integer> map = ImmutableSortedMap.empty();
+        for (int i = 0; i < 20_000; ++i) {
+            final int key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(ImmutableSortedMap.of(expected), map);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.entrySet().stream().collect(Collectors.toList()),
+                map.stream().collect(Collectors.toList()));
+        assertBalanced(((SortedMapTree<Integer, Integer>) map).root());
+    }
+
+    @Test
+    public void sortedInsertionsStayBalanced() throws Exception {
+        ImmutableSortedMap<Integer, Integer> map = ImmutableSortedMap.empty();
+        for (int i = 0; i < 10_000; ++i) map = map.put(i, i);
+        assertBalanced(((SortedMapTree<Integer, Integer>) map).root());
+        for (int i = 0; i < 9_000; ++i) map = map.remove(i);
+        assertBalanced(((SortedMapTree<Integer, Integer>) map).root());
+    }
+
+    private static int assertBalanced(final SortedMapTree.Node<?, ?> node) {
+        if (node == null) return 0;
+        final int left = assertBalanced(node.left);
+        final int right = assertBalanced(node.right);
+        assertEquals(left + 1 + right, node.size);
+        assertTrue(left + right <= 1 || (left <= 3 * right && right <= 3 * left));
+        return node.size;
+    }
+}
@@ -0,0 +1,68 @@
+package edu.immutables.bst;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class IntTreeTest {
+
+    @Test
+    public void addAndContains() throws Exception {
+        final IntTree tree = IntTree.empty().add(3).add(1).add(2);
+        assertEquals(3, tree.size());
+        assertTrue(tree.contains(1));
+        assertFalse(tree.contains(4));
+        assertArrayEquals(new int[]{1, 2, 3}, tree.toArray());
+    }
+
+    @Test
+    public void removeKeepsOldVersion() throws Exception {
+        final IntTree tree = IntTree.of(5, 1, 3, 1);
+        final IntTree removed = tree.remove(3);
+        assertArrayEquals(new int[]{1, 3, 5}, tree.toArray());
+        assertArrayEquals(new int[]{1, 5}, removed.toArray());
+        assertSame(removed, removed.remove(3));
+    }
+
+    @Test
+    public void randomAddAndRemove() throws Exception {
+        final Random random = new Random(7);
+        final TreeSet<Integer> expected = new TreeSet<>();
+        IntTree tree = IntTree.empty(4);
+        for (int i = 0; i < 5_000; ++i) {
+            final int key = random.nextInt(1_000) - 500;
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                tree = tree.remove(key);
+            } else {
+                expected.add(key);
+                tree = tree.add(key);
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), tree.stream().toArray());
+    }
+
+    @Test
+    public void stream() throws Exception {
+        final IntTree tree = IntTree.of(IntStream.range(0, 10_000).map(i -> 9_999 - i));
+        assertEquals(10_000, tree.stream().count());
+        assertEquals(49_995_000L, tree.stream().asLongStream().sum());
+        assertEquals(IntTree.of(1, 2, 3), IntTree.of(3, 2, 1));
+    }
+
+    @Test
+    public void longTree() throws Exception {
+        final long big = 1L << 40;
+        final LongTree tree = LongTree.of(big, 1, big + 1).remove(1);
+        assertTrue(tree.contains(big));
+        assertFalse(tree.contains(1));
+        assertArrayEquals(new long[]{big, big + 1}, tree.stream().toArray());
+        assertEquals(Arrays.asList(big, big + 1), Arrays.asList(tree.stream().boxed().toArray()));
+    }
+}
@@ -0,0 +1,51 @@
+package edu.immutables.bst;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class LongTreeTest {
+
+    @Test
+    public void randomAddAndRemove() throws Exception {
+        final Random random = new Random(11);
+        final TreeSet<Long> expected = new TreeSet<>();
+        LongTree tree = LongTree.empty(4);
+        for (int i = 0; i < 5_000; ++i) {
+            final long key = (random.nextInt(1_000) - 500) * (1L << 33);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                tree = tree.remove(key);
+            } else {
+                expected.add(key);
+                tree = tree.add(key);
+            }
+            assertEquals(expected.contains(key), tree.contains(key));
+        }
+        assertEquals(expected.size(), tree.size());
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), tree.stream().toArray());
+        assertArrayEquals(tree.toArray(), LongTree.of(tree.toArray(), 5).toArray());
+    }
+
+    @Test
+    public void removeAllRebalances() throws Exception {
+        final TreeSet<Long> expected = new TreeSet<>();
+        LongTree tree = LongTree.empty(5);
+        for (long key = 0; key < 500; ++key) {
+            expected.add(key << 40);
+            tree = tree.add(key << 40);
+        }
+        final Random random = new Random(3);
+        while (!expected.isEmpty()) {
+            final long key = (long) random.nextInt(500) << 40;
+            expected.remove(key);
+            tree = tree.remove(key);
+            assertEquals(expected.size(), tree.size());
+        }
+        assertTrue(tree.isEmpty());
+        assertEquals(LongTree.empty(), tree);
+    }
+}
@@ -0,0 +1,112 @@
+package edu.immutables.bst;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class TransientTreeTest {
+
+    @Test
+    public void buildFromEmpty() throws Exception {
+        final List<Integer> elements = IntStream.range(0, 10_000).boxed().collect(Collectors.toList());
+        Collections.shuffle(elements, new Random(5));
+        final TransientTree<Integer> editor = Tree.<Integer>empty().asTransient();
+        for (final Integer element : elements) editor.add(element);
+        final Tree<Integer> tree = editor.persistent();
+        assertEquals(10_000, tree.size());
+        assertEquals(IntStream.range(0, 10_000).boxed().collect(Collectors.toList()), tree.toList());
+        assertEquals(Tree.of(elements).hashCode(), tree.hashCode());
+    }
+
+    @Test
+    public void originalIsUnaffected() throws Exception {
+        final Tree<Integer> tree = Tree.of(1, 2, 3, 4, 5);
+        final Tree<Integer> edited = tree.asTransient().add(6).remove(1).remove(3).add(0).persistent();
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), tree.toList());
+        assertEquals(Arrays.asList(0, 2, 4, 5, 6), edited.toList());
+        final Tree<Integer> editedAgain = edited.asTransient().add(7).remove(0).persistent();
+        assertEquals(Arrays.asList(0, 2, 4, 5, 6), edited.toList());
+        assertEquals(Arrays.asList(2, 4, 5, 6, 7), editedAgain.toList());
+    }
+
+    @Test
+    public void ownedNodesAreEditedInPlace() throws Exception {
+        final TransientTree<Integer> editor = Tree.<Integer>empty().asTransient().add(5).add(3);
+        final Tree<Integer> root = editor.root;
+        assertTrue(root instanceof Branch.Owned);
+        editor.add(8).add(1);
+        assertSame(root, editor.root);
+        assertEquals(4, editor.size());
+        assertTrue(editor.contains(8));
+        assertEquals(Arrays.asList(1, 3, 5, 8), editor.persistent().toList());
+    }
+
+    @Test
+    public void randomEdits() throws Exception {
+        final Random random = new Random(9);
+        final TreeSet<Integer> expected = new TreeSet<>();
+        Tree<Integer> tree = Tree.empty();
+        for (int round = 0; round < 20; ++round) {
+            final Tree<Integer> before = tree;
+            final List<Integer> beforeElements = before.toList();
+            final TransientTree<Integer> editor = tree.asTransient();
+            for (int i = 0; i < 200; ++i) {
+                final int element = random.nextInt(1_000);
+                if (random.nextInt(3) == 0) {
+                    expected.remove(element);
+                    editor.remove(element);
+                } else {
+                    expected.add(element);
+                    editor.add(element);
+                }
+            }
+            tree = editor.persistent();
+            assertEquals(new ArrayList<>(expected), tree.toList());
+            assertEquals(expected.size(), tree.size());
+            assertEquals(beforeElements, before.toList());
+        }
+    }
+
+    @Test
+    public void persistentNodesHaveFinalFields() throws Exception {
+        for (final Class<?> layout : Arrays.asList(Branch.class, Branch.Leaf.class, Branch.Full.class)) {
+            for (final Field field : layout.getDeclaredFields()) {
+                assertTrue(layout.getSimpleName() + "." + field.getName(), Modifier.isFinal(field.getModifiers()));
+            }
+        }
+    }
+
+    @Test
+    public void persistentKeepsTheEditedNodes() throws Exception {
+        final TransientTree<Integer> editor = Tree.of(1, 2, 3).asTransient().add(4).add(5).remove(1);
+        final Tree<Integer> root = editor.root;
+        assertSame(root, editor.persistent());
+        assertEquals(Arrays.asList(2, 3, 4, 5), root.toList());
+    }
+
+    @Test
+    public void otherImplementations() throws Exception {
+        final Tree<Integer> tree = BPlusTree.of(1, 2, 3);
+        final Tree<Integer> edited = tree.asTransient().add(4).remove(1).persistent();
+        assertEquals(Arrays.asList(2, 3, 4), edited.toList());
+        assertEquals(Arrays.asList(1, 2, 3), tree.toList());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void usedAfterPersistent() throws Exception {
+        final TransientTree<Integer> editor = Tree.<Integer>empty().asTransient();
+        editor.persistent();
+        editor.add(1);
+    }
+}
@@ -5,9 +5,14 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
@@ -21,9 +26,27 @@ public class TreeTest {
         }
     }
 
+    /**
+     * @return empty tree of the implementation under test
+     */
+    protected Tree<Integer> empty() {
+        return Tree.empty();
+    }
+
+    /**
+     * @return tree of the implementation under test holding the given elements
+     */
+    protected Tree<Integer> of(final List<Integer> list) {
+        return Tree.of(list);
+    }
+
+    protected Tree<Integer> of(final Integer... a) {
+        return of(Arrays.asList(a));
+    }
+
     @Test
     public void add() throws Exception {
-        final Tree<Integer> tree = Tree.empty();
+        final Tree<Integer> tree = empty();
         final Tree<Integer> newTree = tree.add(1);
         assertEquals(1, newTree.size());
         assertEquals(Collections.singletonList(1), newTree.toList());
@@ -31,7 +54,7 @@ public class TreeTest {
 
     @Test
     public void remove() throws Exception {
-        final Tree<Integer> tree = Tree.of(1, 2, 3);
+        final Tree<Integer> tree = of(1, 2, 3);
         final Tree<Integer> newTree = tree.remove(1);
         assertEquals(2, newTree.size());
         assertEquals(Arrays.asList(2, 3), newTree.toList());
@@ -39,7 +62,7 @@ public class TreeTest {
 
     @Test
     public void map() throws Exception {
-        final Tree<Integer> tree = Tree.of(1, 2, 3);
+        final Tree<Integer> tree = of(1, 2, 3);
         final Tree<String> newTree = tree.map(String::valueOf);
         assertEquals(3, newTree.size());
         assertEquals(Arrays.asList("1", "2", "3"), newTree.toList());
@@ -47,7 +70,7 @@ public class TreeTest {
 
     @Test
     public void flatMap() throws Exception {
-        final Tree<Integer> tree = Tree.of(1, 2, 3);
+        final Tree<Integer> tree = of(1, 2, 3);
         final Tree<Integer> newTree = tree.flatMap(e ->
                 IntStream.range(1, e + 1).mapToObj(x -> e).reduce(Tree.empty(), Tree::add, Tree::union));
         assertEquals(3, newTree.size());
@@ -57,14 +80,14 @@ public class TreeTest {
     @Test
     public void foreach() throws Exception {
         final Console console = new Console();
-        final Tree<Integer> tree = Tree.of(1, 2, 3);
+        final Tree<Integer> tree = of(1, 2, 3);
         tree.foreach(console::out);
         assertEquals(Arrays.asList("1", "2", "3"), console.buffer);
     }
 
     @Test
     public void contains() throws Exception {
-        final Tree<Integer> tree = Tree.of(1, 2, 3);
+        final Tree<Integer> tree = of(1, 2, 3);
         assertTrue(tree.contains(1));
         assertTrue(tree.contains(2));
         assertTrue(tree.contains(3));
@@ -73,17 +96,201 @@ public class TreeTest {
 
     @Test
     public void size() throws Exception {
-        final Tree<Integer> tree = Tree.of(1, 2, 3);
+        final Tree<Integer> tree = of(1, 2, 3);
         assertEquals(3, tree.size());
     }
 
     @Test
     public void union() throws Exception {
-        final Tree<Integer> treeOne = Tree.of(1, 2, 3);
-        final Tree<Integer> treeTwo = Tree.of(2, 3, 4);
+        final Tree<Integer> treeOne = of(1, 2, 3);
+        final Tree<Integer> treeTwo = of(2, 3, 4);
         final Tree<Integer> unionTree = treeOne.union(treeTwo);
         assertEquals(4, unionTree.size());
         assertEquals(Arrays.asList(1, 2, 3, 4), unionTree.toList());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void ofDoesNotModifyInput() throws Exception {
+        final List<Integer> list = new ArrayList<>(Arrays.asList(3, 1, 2));
+        final Tree<Integer> tree = of(list);
+        assertEquals(Arrays.asList(3, 1, 2), list);
+        assertEquals(Arrays.asList(1, 2, 3), tree.toList());
+    }
+
+    @Test
+    public void ofRemovesEqualBoxedDuplicates() throws Exception {
+        final List<Integer> list = Arrays.asList(Integer.valueOf(1000), Integer.valueOf(1000), 7);
+        final Tree<Integer> tree = of(list);
+        assertEquals(2, tree.size());
+        assertEquals(Arrays.asList(7, 1000), tree.toList());
+    }
+
+    @Test
+    public void ofSorted() throws Exception {
+        final Tree<Integer> tree = Tree.ofSorted(IntStream.range(0, 100_000).boxed());
+        assertEquals(100_000, tree.size());
+        assertTrue(tree.contains(0));
+        assertTrue(tree.contains(99_999));
+        assertFalse(tree.contains(100_000));
+        assertEquals(Arrays.asList(1, 2, 3), Tree.ofSorted(Arrays.asList(1, 1, 2, 3, 3).iterator()).toList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ofSortedRejectsUnsortedInput() throws Exception {
+        Tree.ofSorted(Arrays.asList(1, 3, 2).iterator());
+    }
+
+    @Test
+    public void mapMonotonic() throws Exception {
+        final Tree<Integer> tree = of(1, 2, 3);
+        final Tree<Long> newTree = tree.mapMonotonic(e -> e * 10L);
+        assertEquals(Arrays.asList(10L, 20L, 30L), newTree.toList());
+        assertEquals(tree.toString().replace("1", "10").replace("2", "20").replace("3", "30"), newTree.toString());
+    }
+
+    @Test
+    public void mapMergesCollidingElements() throws Exception {
+        final Tree<Integer> tree = of(1, 2, 3, 4);
+        final Tree<Integer> newTree = tree.map(e -> e / 2);
+        assertEquals(Arrays.asList(0, 1, 2), newTree.toList());
+    }
+
+    @Test
+    public void diff() throws Exception {
+        final Tree<Integer> tree = of(1, 2, 3, 4, 5);
+        final Tree<Integer> newTree = tree.remove(2).remove(5).add(6).add(0);
+        final TreeDiff<Integer> diff = tree.diff(newTree);
+        assertEquals(Arrays.asList(0, 6), diff.added());
+        assertEquals(Arrays.asList(2, 5), diff.removed());
+        assertTrue(tree.diff(tree).isEmpty());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), empty().diff(tree).added());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), tree.diff(empty()).removed());
+    }
+
+    @Test
+    public void diffBetweenSharedVersions() throws Exception {
+        final Random random = new Random(3);
+        Tree<Integer> tree = of(IntStream.range(0, 2_000).map(i -> i * 2).boxed().toArray(Integer[]::new));
+        for (int round = 0; round < 20; ++round) {
+            Tree<Integer> newTree = tree;
+            for (int i = 0; i < 10; ++i) {
+                final int element = random.nextInt(4_000);
+                newTree = random.nextBoolean() ? newTree.add(element) : newTree.remove(element);
+            }
+            final List<Integer> added = new ArrayList<>(newTree.toList());
+            added.removeAll(tree.toList());
+            final List<Integer> removed = new ArrayList<>(tree.toList());
+            removed.removeAll(newTree.toList());
+            final TreeDiff<Integer> diff = tree.diff(newTree);
+            assertEquals(added, diff.added());
+            assertEquals(removed, diff.removed());
+            tree = newTree;
+        }
+    }
+
+    @Test
+    public void hashCodeDependsOnContentOnly() throws Exception {
+        final Tree<Integer> tree = of(1, 2, 3);
+        assertEquals(tree.hashCode(), empty().add(3).add(1).add(2).hashCode());
+        assertEquals(tree, of(3, 2, 1));
+    }
+
+    @Test
+    public void addAll() throws Exception {
+        final Tree<Integer> tree = of(1, 5, 9);
+        final Tree<Integer> newTree = tree.addAll(Arrays.asList(7, 3, 5, 3, 11));
+        assertEquals(Arrays.asList(1, 3, 5, 7, 9, 11), newTree.toList());
+        assertEquals(Arrays.asList(1, 5, 9), tree.toList());
+        assertEquals(Arrays.asList(2, 3), empty().addAll(Arrays.asList(3, 2)).toList());
+        assertEquals(Arrays.asList(1, 2, 5, 9), tree.addAllSorted(Stream.of(1, 2, 2)).toList());
+    }
+
+    @Test
+    public void removeAll() throws Exception {
+        final Tree<Integer> tree = of(1, 2, 3, 4, 5, 6, 7);
+        final Tree<Integer> newTree = tree.removeAll(Arrays.asList(6, 4, 8, 1, 4));
+        assertEquals(Arrays.asList(2, 3, 5, 7), newTree.toList());
+        assertEquals(7, tree.size());
+        assertEquals(Arrays.asList(1, 3, 5, 6, 7), tree.removeAllSorted(Stream.of(2, 4)).toList());
+        assertEquals(0, tree.removeAll(tree).size());
+    }
+
+    @Test
+    public void randomBatches() throws Exception {
+        final Random random = new Random(11);
+        final TreeSet<Integer> expected = new TreeSet<>();
+        Tree<Integer> tree = empty();
+        for (int round = 0; round < 50; ++round) {
+            final List<Integer> batch = new ArrayList<>();
+            for (int i = random.nextInt(200); i > 0; --i) batch.add(random.nextInt(2_000));
+            if (random.nextInt(3) == 0) {
+                expected.removeAll(batch);
+                tree = tree.removeAll(batch);
+            } else {
+                expected.addAll(batch);
+                tree = tree.addAll(batch);
+            }
+            assertEquals(expected.size(), tree.size());
+            assertEquals(new ArrayList<>(expected), tree.toList());
+        }
+    }
+
+    @Test
+    public void stream() throws Exception {
+        final Tree<Integer> tree = of(5, 3, 1, 4, 2);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), tree.stream().collect(Collectors.toList()));
+        assertEquals(0, empty().stream().count());
+        final Spliterator<Integer> spliterator = tree.spliterator();
+        assertEquals(5, spliterator.getExactSizeIfKnown());
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT
+                | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE));
+        final Spliterator<Integer> empty = Tree.<Integer>empty().spliterator();
+        assertEquals(spliterator.characteristics(), empty.characteristics());
+        assertNull(empty.getComparator());
+    }
+
+    @Test
+    public void parallelStream() throws Exception {
+        final List<Integer> expected = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        final Tree<Integer> tree = of(expected);
+        assertEquals(expected, tree.parallelStream().collect(Collectors.toList()));
+        assertEquals(4_999_950_000L, tree.parallelStream().mapToLong(Integer::longValue).sum());
+        assertEquals(50_000, tree.parallelStream().filter(e -> e % 2 == 0).count());
+    }
+
+    @Test
+    public void spliteratorSplitsWithExactSizes() throws Exception {
+        final Tree<Integer> tree = of(IntStream.range(0, 1_000).boxed().collect(Collectors.toList()));
+        final List<Spliterator<Integer>> parts = new ArrayList<>();
+        parts.add(tree.spliterator());
+        for (int round = 0; round < 6; ++round) {
+            final List<Spliterator<Integer>> next = new ArrayList<>();
+            for (final Spliterator<Integer> part : parts) {
+                final Spliterator<Integer> prefix = part.trySplit();
+                if (prefix != null) next.add(prefix);
+                next.add(part);
+            }
+            parts.clear();
+            parts.addAll(next);
+        }
+        assertTrue(parts.size() > 16);
+        final List<Integer> elements = new ArrayList<>();
+        for (final Spliterator<Integer> part : parts) {
+            final long size = part.getExactSizeIfKnown();
+            final int before = elements.size();
+            part.tryAdvance(elements::add);
+            part.forEachRemaining(elements::add);
+            assertEquals(size, elements.size() - before);
+        }
+        assertEquals(tree.toList(), elements);
+    }
+
+    @Test
+    public void iteratorIsLazy() throws Exception {
+        final Iterator<Integer> iterator = of(3, 1, 2).iterator();
+        assertEquals(Integer.valueOf(1), iterator.next());
+        assertEquals(Integer.valueOf(2), iterator.next());
+        assertEquals(Integer.valueOf(3), iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+}
@@ -0,0 +1,146 @@
+package edu.immutables.bst;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class VersionedTreeTest {
+
+    /**
+     * Clock moving forward only when told to.
+     */
+    private static final class ManualClock extends Clock {
+        private Instant now = Instant.EPOCH;
+
+        void advance(final Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @Test
+    public void timeTravel() throws Exception {
+        final VersionedTree<Integer> store = new VersionedTree<>(Tree.of(1, 2));
+        final long v1 = store.commit(tree -> tree.add(3));
+        final long v2 = store.commit(tree -> tree.remove(1));
+        assertEquals(1, v1);
+        assertEquals(2, v2);
+        assertEquals(Arrays.asList(1, 2), store.asOf(0).toList());
+        assertEquals(Arrays.asList(1, 2, 3), store.asOf(v1).toList());
+        assertEquals(Arrays.asList(2, 3), store.current().toList());
+        assertEquals(3, store.retainedVersions());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void futureVersion() throws Exception {
+        new VersionedTree<>(Tree.of(1)).asOf(1);
+    }
+
+    @Test
+    public void retentionByCount() throws Exception {
+        final VersionedTree<Integer> store = new VersionedTree<>(Tree.<Integer>empty(), 3, null);
+        final Tree<Integer> snapshot = store.current();
+        for (int i = 0; i < 10; ++i) store.commit(tree -> tree.add(tree.size()));
+        assertEquals(3, store.retainedVersions());
+        assertEquals(8, store.oldestVersion());
+        assertEquals(10, store.currentVersion());
+        assertEquals(0, snapshot.size());
+        try {
+            store.asOf(7);
+            fail();
+        } catch (NoSuchElementException expected) {
+            assertEquals(8, store.asOf(8).size());
+        }
+    }
+
+    @Test
+    public void retentionByAge() throws Exception {
+        final ManualClock clock = new ManualClock();
+        final VersionedTree<Integer> store = new VersionedTree<>(Tree.<Integer>empty(), Integer.MAX_VALUE, Duration.ofSeconds(10), clock);
+        for (int i = 0; i < 5; ++i) {
+            store.commit(tree -> tree.add(tree.size()));
+            clock.advance(Duration.ofSeconds(4));
+        }
+        assertEquals(3, store.retainedVersions());
+        assertEquals(Arrays.asList(0, 1, 2), store.asOf(Instant.EPOCH.plusSeconds(9)).toList());
+        clock.advance(Duration.ofMinutes(1));
+        store.prune();
+        assertEquals(1, store.retainedVersions());
+        assertEquals(5, store.current().size());
+    }
+
+    @Test
+    public void asOfInstant() throws Exception {
+        final ManualClock clock = new ManualClock();
+        final VersionedTree<Integer> store = new VersionedTree<>(Tree.<Integer>empty(), 5, null, clock);
+        for (int i = 0; i < 6; ++i) {
+            store.commit(tree -> tree.add(tree.size()));
+            if (i % 2 == 1) clock.advance(Duration.ofSeconds(1));
+        }
+        assertEquals(2, store.oldestVersion());
+        assertEquals(2, store.asOf(Instant.EPOCH).size());
+        assertEquals(4, store.asOf(Instant.EPOCH.plusMillis(1_500)).size());
+        assertEquals(6, store.asOf(Instant.EPOCH.plusSeconds(3)).size());
+        store.commit(tree -> tree.add(tree.size()));
+        try {
+            store.asOf(Instant.EPOCH);
+            fail();
+        } catch (NoSuchElementException e) {
+            assertEquals(4, store.asOf(Instant.EPOCH.plusSeconds(1)).size());
+        }
+    }
+
+    @Test
+    public void nodeSharing() throws Exception {
+        final VersionedTree<Integer> store = new VersionedTree<>(Tree.of(IntStream.range(0, 1_023).boxed().toArray(Integer[]::new)));
+        store.commit(tree -> tree.add(5_000));
+        final NodeSharing sharing = store.nodeSharing();
+        assertEquals(1_023 + 11, sharing.distinctNodes());
+        assertEquals(1_023 - 10, sharing.sharedNodes());
+    }
+
+    @Test
+    public void concurrentReadersSeeConsistentSnapshots() throws Exception {
+        final VersionedTree<Integer> store = new VersionedTree<>(Tree.<Integer>empty(), 16, null);
+        final List<Throwable> failures = new ArrayList<>();
+        final Thread reader = new Thread(() -> {
+            for (int i = 0; i < 10_000; ++i) {
+                final long version = store.currentVersion();
+                try {
+                    if (store.asOf(version).size() != version) failures.add(new AssertionError(version));
+                } catch (NoSuchElementException released) {
+                    // released by retention between the two reads
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 2_000; ++i) store.commit(tree -> tree.add(tree.size()));
+        reader.join();
+        assertTrue(failures.isEmpty());
+    }
+}
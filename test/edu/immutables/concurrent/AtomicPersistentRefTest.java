@@ -0,0 +1,171 @@
+package edu.immutables.concurrent;
+
+import edu.immutables.bst.Tree;
+import edu.immutables.list.impl.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class AtomicPersistentRefTest {
+
+    private static final int THREADS = 8;
+    private static final int UPDATES = 2_000;
+
+    private static void runConcurrently(final IntConsumerWithThread task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; ++t) {
+            final int thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int i = 0; i < UPDATES; ++i) task.accept(thread, i);
+            }));
+        }
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (final Thread thread : threads) thread.join();
+    }
+
+    private interface IntConsumerWithThread {
+        void accept(int thread, int i);
+    }
+
+    @Test
+    public void update() throws Exception {
+        final AtomicPersistentRef<Tree<Integer>> ref = new AtomicPersistentRef<>(Tree.empty());
+        runConcurrently((thread, i) -> ref.update(tree -> tree.add(thread * UPDATES + i)));
+        assertEquals(THREADS * UPDATES, ref.get().size());
+        assertEquals(IntStream.range(0, THREADS * UPDATES).boxed().collect(Collectors.toList()), ref.get().toList());
+    }
+
+    @Test
+    public void accumulate() throws Exception {
+        final AtomicPersistentRef<ImmutableList<Integer>> ref = new AtomicPersistentRef<>(ImmutableList.emptyList());
+        runConcurrently((thread, i) -> ref.accumulate(i, ImmutableList::addHead));
+        assertEquals(THREADS * UPDATES, ref.get().size());
+    }
+
+    @Test
+    public void snapshotsAreStable() throws Exception {
+        final AtomicPersistentRef<Tree<Integer>> ref = new AtomicPersistentRef<>(Tree.of(1, 2, 3));
+        final Tree<Integer> snapshot = ref.get();
+        ref.update(tree -> tree.add(4));
+        assertEquals(3, snapshot.size());
+        assertEquals(4, ref.get().size());
+        assertFalse(ref.compareAndSet(snapshot, Tree.empty()));
+        final Tree<Integer> current = ref.get();
+        assertSame(current, ref.update(tree -> tree));
+    }
+
+    @Test
+    public void combiningAdds() throws Exception {
+        final CombiningRef<Tree<Integer>, Integer> ref = AtomicPersistentRef.combining(Tree.<Integer>empty());
+        runConcurrently((thread, i) -> ref.add(thread * UPDATES + i));
+        assertEquals(THREADS * UPDATES, ref.get().size());
+        assertEquals(IntStream.range(0, THREADS * UPDATES).boxed().collect(Collectors.toList()), ref.get().toList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void uncontendedAddRethrowsFailures() throws Exception {
+        final CombiningRef<Tree<Integer>, Integer> ref = new CombiningRef<>(Tree.empty(),
+                (tree, e) -> {
+                    throw new IllegalArgumentException();
+                },
+                (tree, batch) -> {
+                    throw new IllegalArgumentException();
+                });
+        ref.add(1);
+    }
+
+    @Test
+    public void combiningRethrowsFailures() throws Exception {
+        assertEveryAdderFails(IllegalArgumentException::new, IllegalArgumentException.class);
+    }
+
+    @Test
+    public void combiningRethrowsErrors() throws Exception {
+        assertEveryAdderFails(StackOverflowError::new, StackOverflowError.class);
+    }
+
+    /**
+     * Force every add onto the combining path with a failing batch update,
+     * every adder has to return with the failure.
+     */
+    private static void assertEveryAdderFails(final Supplier<? extends Throwable> failure,
+                                              final Class<? extends Throwable> expected) throws Exception {
+        final Tree<Integer> initial = Tree.of(1, 2, 3);
+        final Tree<Integer> spoiled = initial.add(4);
+        final List<CombiningRef<Tree<Integer>, Integer>> holder = new ArrayList<>();
+        // every adder reads the initial tree, then the snapshot moves on so all their single updates lose
+        final CyclicBarrier allRead = new CyclicBarrier(THREADS,
+                () -> assertTrue(holder.get(0).compareAndSet(initial, spoiled)));
+        final AtomicInteger combined = new AtomicInteger();
+        // the first batch waits for the other adders to queue up, so a later batch fails several of them at once
+        final CountDownLatch lost = new CountDownLatch(THREADS);
+        final CombiningRef<Tree<Integer>, Integer> ref = new CombiningRef<>(initial,
+                (tree, e) -> {
+                    try {
+                        allRead.await(10, TimeUnit.SECONDS);
+                    } catch (Exception ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    lost.countDown();
+                    return tree.add(e);
+                },
+                (tree, batch) -> {
+                    if (combined.getAndAdd(batch.size()) == 0) {
+                        try {
+                            lost.await(10, TimeUnit.SECONDS);
+                            Thread.sleep(100);
+                        } catch (InterruptedException ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                    }
+                    throw sneaky(failure.get());
+                });
+        holder.add(ref);
+
+        final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; ++t) {
+            final int element = 10 + t;
+            final Thread thread = new Thread(() -> {
+                try {
+                    ref.add(element);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) thread.join(10_000);
+
+        for (final Thread thread : threads) assertFalse(thread.isAlive());
+        assertEquals(THREADS, failures.size());
+        for (final Throwable thrown : failures) assertTrue(thrown.toString(), expected.isInstance(thrown));
+        assertEquals(THREADS, combined.get());
+        assertSame(spoiled, ref.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <X extends Throwable> RuntimeException sneaky(final Throwable failure) throws X {
+        throw (X) failure;
+    }
+}
@@ -0,0 +1,130 @@
+package edu.immutables.heap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class HeapTest {
+
+    @Test
+    public void insertAndDeleteMin() throws Exception {
+        final Heap<Integer> heap = Heap.<Integer>empty().insert(3).insert(1).insert(2);
+        assertEquals(Integer.valueOf(1), heap.findMin());
+        assertEquals(Integer.valueOf(2), heap.deleteMin().findMin());
+        assertEquals(3, heap.size());
+        assertEquals(2, heap.deleteMin().size());
+        assertEquals(Integer.valueOf(1), heap.findMin());
+    }
+
+    @Test
+    public void duplicatesAreKept() throws Exception {
+        final Heap<Integer> heap = Heap.of(Arrays.asList(2, 1, 2, 1, 1));
+        assertEquals(5, heap.size());
+        assertEquals(Arrays.asList(1, 1, 1, 2, 2), heap.stream().collect(Collectors.toList()));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void findMinOfEmpty() throws Exception {
+        Heap.<Integer>empty().findMin();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void deleteMinOfEmpty() throws Exception {
+        Heap.<Integer>empty().deleteMin();
+    }
+
+    @Test
+    public void meld() throws Exception {
+        final Heap<Integer> left = Heap.of(Arrays.asList(5, 1, 9));
+        final Heap<Integer> right = Heap.of(Arrays.asList(4, 8, 0));
+        final Heap<Integer> melded = left.meld(right);
+        assertEquals(6, melded.size());
+        assertEquals(Arrays.asList(0, 1, 4, 5, 8, 9), melded.stream().collect(Collectors.toList()));
+        assertEquals(Arrays.asList(1, 5, 9), left.stream().collect(Collectors.toList()));
+        assertSame(left, left.meld(Heap.empty()));
+        final Heap<Integer> reversed = Heap.of(Comparator.<Integer>reverseOrder(), Arrays.asList(7, 3));
+        assertEquals(Arrays.asList(0, 1, 3, 4, 5, 7, 8, 9),
+                melded.meld(reversed).stream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void comparator() throws Exception {
+        final Heap<String> heap = Heap.of(Comparator.comparing(String::length), Arrays.asList("ccc", "a", "bb"));
+        assertEquals("a", heap.findMin());
+        assertEquals("[a, bb, ccc]", heap.toString());
+        assertEquals("[, a]", Heap.of(Arrays.asList("a", "")).toString());
+    }
+
+    @Test
+    public void randomOperationsMatchPriorityQueue() throws Exception {
+        final Random random = new Random(3);
+        final PriorityQueue<Integer> expected = new PriorityQueue<>();
+        Heap<Integer> heap = Heap.empty();
+        for (int i = 0; i < 50_000; ++i) {
+            if (!expected.isEmpty() && random.nextInt(3) == 0) {
+                assertEquals(expected.poll(), heap.findMin());
+                heap = heap.deleteMin();
+            } else {
+                final int element = random.nextInt(1_000);
+                expected.add(element);
+                heap = heap.insert(element);
+            }
+        }
+        assertEquals(expected.size(), heap.size());
+    }
+
+    @Test
+    public void heapsort() throws Exception {
+        final Random random = new Random(9);
+        final List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 100_000; ++i) list.add(random.nextInt(10_000));
+        final List<Integer> expected = new ArrayList<>(list);
+        Collections.sort(expected);
+        assertEquals(expected, Heap.sort(list));
+        Collections.reverse(expected);
+        assertEquals(expected, Heap.sort(list, Comparator.reverseOrder()));
+    }
+
+    @Test
+    public void deleteMinIsLogarithmicOnEveryVersion() throws Exception {
+        final int[] comparisons = {0};
+        final Comparator<Integer> counting = (a, b) -> {
+            ++comparisons[0];
+            return Integer.compare(a, b);
+        };
+        Heap<Integer> heap = Heap.empty(counting);
+        for (int i = 0; i < 1 << 16; ++i) heap = heap.insert(i);
+        for (int round = 0; round < 100; ++round) {
+            comparisons[0] = 0;
+            assertEquals(Integer.valueOf(1), heap.deleteMin().findMin());
+            assertTrue(comparisons[0] + " comparisons", comparisons[0] <= 8 * 16);
+        }
+        heap = heap.deleteMin();
+        for (int round = 0; round < 100; ++round) {
+            comparisons[0] = 0;
+            assertEquals(Integer.valueOf(2), heap.deleteMin().findMin());
+            assertTrue(comparisons[0] + " comparisons", comparisons[0] <= 8 * 16);
+        }
+    }
+
+    @Test
+    public void sortedInsertionsDoNotOverflow() throws Exception {
+        Heap<Integer> heap = Heap.empty();
+        for (int i = 100_000; i > 0; --i) heap = heap.insert(i);
+        heap = heap.deleteMin();
+        assertEquals(Integer.valueOf(2), heap.findMin());
+        heap = Heap.empty();
+        for (int i = 0; i < 100_000; ++i) heap = heap.insert(i);
+        assertEquals(Integer.valueOf(1), heap.deleteMin().findMin());
+    }
+}
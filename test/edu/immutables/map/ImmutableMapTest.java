@@ -0,0 +1,140 @@
+package edu.immutables.map;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ImmutableMapTest {
+
+    /**
+     * Key with a configurable hash to force collisions.
+     */
+    private static final class Key {
+        final int id;
+        final int hash;
+
+        Key(final int id, final int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "Key" + id;
+        }
+    }
+
+    @Test
+    public void putAndGet() throws Exception {
+        final ImmutableMap<String, Integer> map = ImmutableMap.<String, Integer>empty().put("a", 1).put("b", 2);
+        final ImmutableMap<String, Integer> updated = map.put("a", 3);
+        assertEquals(2, map.size());
+        assertEquals(Integer.valueOf(1), map.get("a"));
+        assertEquals(Integer.valueOf(3), updated.get("a"));
+        assertNull(map.get("c"));
+        assertEquals(Integer.valueOf(0), map.getOrDefault("c", 0));
+        assertSame(updated, updated.put("a", updated.get("a")));
+        assertTrue(ImmutableMap.empty().isEmpty());
+    }
+
+    @Test
+    public void removeKeepsOldVersion() throws Exception {
+        final ImmutableMap<String, Integer> map = ImmutableMap.<String, Integer>empty().put("a", 1).put("b", 2);
+        final ImmutableMap<String, Integer> removed = map.remove("a");
+        assertTrue(map.containsKey("a"));
+        assertFalse(removed.containsKey("a"));
+        assertEquals(1, removed.size());
+        assertSame(removed, removed.remove("a"));
+        assertSame(ImmutableMap.empty(), removed.remove("b"));
+    }
+
+    @Test
+    public void collisions() throws Exception {
+        ImmutableMap<Key, Integer> map = ImmutableMap.empty();
+        for (int i = 0; i < 10; ++i) map = map.put(new Key(i, i % 2), i);
+        assertEquals(10, map.size());
+        for (int i = 0; i < 10; ++i) assertEquals(Integer.valueOf(i), map.get(new Key(i, i % 2)));
+        assertNull(map.get(new Key(10, 0)));
+        for (int i = 0; i < 9; ++i) map = map.remove(new Key(i, i % 2));
+        assertEquals(1, map.size());
+        assertEquals(Integer.valueOf(9), map.get(new Key(9, 1)));
+    }
+
+    @Test
+    public void randomOperations() throws Exception {
+        final Random random = new Random(11);
+        final Map<Integer, Integer> expected = new HashMap<>();
+        ImmutableMap<Integer, Integer> map = ImmutableMap.empty();
+        for (int i = 0; i < 20_000; ++i) {
+            final int key = random.nextInt(3_000) * 0x10001;
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.size(), map.stream().count());
+        assertEquals(ImmutableMap.of(expected), map);
+        assertEquals(expected.hashCode(), map.hashCode());
+        map.foreach((key, value) -> assertEquals(expected.get(key), value));
+    }
+
+    @Test
+    public void removalsCollapseNodes() throws Exception {
+        ImmutableMap<Key, Integer> map = ImmutableMap.empty();
+        for (int i = 0; i < 100; ++i) map = map.put(new Key(i, i * 1_024), i);
+        for (int i = 1; i < 100; ++i) map = map.remove(new Key(i, i * 1_024));
+        assertEquals(ImmutableMap.<Key, Integer>empty().put(new Key(0, 0), 0), map);
+    }
+
+    @Test
+    public void merge() throws Exception {
+        ImmutableMap<Integer, Integer> base = ImmutableMap.empty();
+        for (int i = 0; i < 1_000; ++i) base = base.put(i, i);
+        final ImmutableMap<Integer, Integer> left = base.put(-1, -1).put(5, 50);
+        final ImmutableMap<Integer, Integer> right = base.put(-2, -2).put(5, 500);
+        final ImmutableMap<Integer, Integer> merged = left.merge(right, Integer::sum);
+        assertEquals(1_002, merged.size());
+        assertEquals(Integer.valueOf(550), merged.get(5));
+        assertEquals(Integer.valueOf(-1), merged.get(-1));
+        assertEquals(Integer.valueOf(-2), merged.get(-2));
+        assertEquals(Integer.valueOf(14), merged.get(7));
+        final ImmutableMap<Integer, Integer> doubled = base.merge(base, Integer::sum);
+        assertEquals(1_000, doubled.size());
+        for (int i = 0; i < 1_000; ++i) assertEquals(Integer.valueOf(2 * i), doubled.get(i));
+        assertSame(base, base.merge(base, (a, b) -> a));
+        assertSame(base, base.merge(ImmutableMap.empty(), Integer::sum));
+        assertSame(base, ImmutableMap.<Integer, Integer>empty().merge(base, Integer::sum));
+        assertSame(left, left.merge(base, (a, b) -> a));
+    }
+
+    @Test
+    public void mergeWithCollisions() throws Exception {
+        ImmutableMap<Key, Integer> left = ImmutableMap.empty();
+        ImmutableMap<Key, Integer> right = ImmutableMap.empty();
+        for (int i = 0; i < 20; ++i) left = left.put(new Key(i, i % 3), i);
+        for (int i = 10; i < 30; ++i) right = right.put(new Key(i, i % 3), i);
+        final ImmutableMap<Key, Integer> merged = left.merge(right, (a, b) -> -a);
+        assertEquals(30, merged.size());
+        assertEquals(Integer.valueOf(-15), merged.get(new Key(15, 0)));
+        assertEquals(Integer.valueOf(25), merged.get(new Key(25, 1)));
+        assertEquals(Integer.valueOf(5), merged.get(new Key(5, 2)));
+    }
+}
@@ -0,0 +1,39 @@
+package edu.immutables.map;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ImmutableSetTest {
+
+    @Test
+    public void addAndRemove() throws Exception {
+        final ImmutableSet<String> set = ImmutableSet.of("a", "b", "a");
+        assertEquals(2, set.size());
+        assertTrue(set.contains("a"));
+        assertFalse(set.remove("a").contains("a"));
+        assertTrue(set.contains("a"));
+        assertSame(set, set.add("b"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), set.stream().collect(Collectors.toSet()));
+        assertEquals("[, a]", ImmutableSet.of("", "a").toString());
+    }
+
+    @Test
+    public void union() throws Exception {
+        final ImmutableSet<Integer> evens = ImmutableSet.of(IntStream.range(0, 500).map(i -> 2 * i).boxed()
+                .collect(Collectors.toList()));
+        final ImmutableSet<Integer> small = ImmutableSet.of(1, 3, 4);
+        final ImmutableSet<Integer> union = evens.union(small);
+        assertEquals(502, union.size());
+        assertTrue(union.contains(3));
+        assertTrue(union.contains(998));
+        assertEquals(union, small.union(evens));
+        assertSame(evens, evens.union(ImmutableSet.of(2, 4)));
+        assertEquals(union.hashCode(), small.union(evens).hashCode());
+    }
+}
@@ -0,0 +1,143 @@
+package edu.immutables.trie;
+
+import edu.immutables.bst.Tree;
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TrieTest {
+
+    @Test
+    public void addAndContains() throws Exception {
+        final Trie trie = Trie.of("romane", "romanus", "romulus", "rubens", "ruber", "rubicon", "rubicundus");
+        assertEquals(7, trie.size());
+        assertTrue(trie.contains("romulus"));
+        assertTrue(trie.contains("ruber"));
+        assertFalse(trie.contains("rom"));
+        assertFalse(trie.contains("rubicons"));
+        assertFalse(trie.contains(""));
+        assertTrue(trie.add("").contains(""));
+        assertTrue(trie.add("rom").contains("rom"));
+        assertSame(trie, trie.add("ruber"));
+    }
+
+    @Test
+    public void removeKeepsOldVersion() throws Exception {
+        final Trie trie = Trie.of("test", "team", "toast");
+        final Trie removed = trie.remove("team");
+        assertTrue(trie.contains("team"));
+        assertFalse(removed.contains("team"));
+        assertTrue(removed.contains("test"));
+        assertEquals(2, removed.size());
+        assertSame(removed, removed.remove("team"));
+        assertSame(removed, removed.remove("te"));
+        assertTrue(removed.remove("test").remove("toast").isEmpty());
+    }
+
+    @Test
+    public void iterationIsSorted() throws Exception {
+        final List<String> keys = Arrays.asList("b", "", "abc", "ab", "a", "ba", "abd", "\u00e9");
+        final List<String> sorted = new ArrayList<>(new TreeSet<>(keys));
+        assertEquals(sorted, Trie.of(keys).stream().collect(Collectors.toList()));
+        assertEquals(sorted.toString(), Trie.of(keys).toString());
+    }
+
+    @Test
+    public void prefix() throws Exception {
+        final Trie trie = Trie.of("api.example.com", "app.example.com", "apple.com", "example.org", "ap");
+        assertEquals(Arrays.asList("ap", "api.example.com", "app.example.com", "apple.com"),
+                trie.prefix("ap").collect(Collectors.toList()));
+        assertEquals(Arrays.asList("app.example.com", "apple.com"), trie.prefix("app").collect(Collectors.toList()));
+        assertEquals(Collections.singletonList("apple.com"), trie.prefix("appl").collect(Collectors.toList()));
+        assertEquals(0, trie.prefix("apx").count());
+        assertEquals(0, trie.prefix("apple.comx").count());
+        assertEquals(5, trie.prefix("").count());
+    }
+
+    @Test
+    public void randomOperations() throws Exception {
+        final Random random = new Random(13);
+        final TreeSet<String> expected = new TreeSet<>();
+        Trie trie = Trie.empty();
+        for (int i = 0; i < 20_000; ++i) {
+            final String key = Integer.toString(random.nextInt(5_000), 7);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                trie = trie.remove(key);
+            } else {
+                expected.add(key);
+                trie = trie.add(key);
+            }
+        }
+        assertEquals(expected.size(), trie.size());
+        assertEquals(new ArrayList<>(expected), trie.stream().collect(Collectors.toList()));
+        for (final String prefix : Arrays.asList("1", "12", "123", "6543")) {
+            assertEquals(expected.subSet(prefix, prefix + Character.MAX_VALUE).stream().collect(Collectors.toList()),
+                    trie.prefix(prefix).collect(Collectors.toList()));
+        }
+        assertEquals(Trie.of(expected), trie);
+        assertEquals(expected.hashCode(), trie.hashCode());
+    }
+
+    @Test
+    public void removalsRestoreCompressedShape() throws Exception {
+        final Trie trie = Trie.of("foobar", "foobaz");
+        final RadixTrie.Node node = ((RadixTrie) trie.add("foo").add("fo").remove("foo").remove("fo")).root();
+        assertEquals(1, node.children().length);
+        assertEquals("fooba", node.children()[0].label(false));
+        assertEquals(2, node.children()[0].children().length);
+    }
+
+    @Test
+    public void versionsShareNodes() throws Exception {
+        final Trie trie = Trie.of("alpha", "beta", "gamma");
+        final RadixTrie updated = (RadixTrie) trie.add("betamax");
+        final RadixTrie.Node before = ((RadixTrie) trie).root();
+        assertSame(before.children()[0], updated.root().children()[0]);
+        assertSame(before.children()[2], updated.root().children()[2]);
+        assertNotSame(before.children()[1], updated.root().children()[1]);
+    }
+
+    @Test
+    public void wideKeyReencodesLabels() throws Exception {
+        final Trie trie = Trie.of("caf\u00e9", "cafe", "car");
+        final Trie wide = trie.add("caf\u20ac").add("\u6771\u4eac");
+        assertFalse(((RadixTrie) trie).wide());
+        assertTrue(((RadixTrie) wide).wide());
+        assertEquals(Arrays.asList("cafe", "caf\u00e9", "caf\u20ac", "car", "\u6771\u4eac"),
+                wide.stream().collect(Collectors.toList()));
+        assertEquals(Arrays.asList("cafe", "caf\u00e9", "caf\u20ac"), wide.prefix("caf").collect(Collectors.toList()));
+        assertTrue(wide.contains("\u6771\u4eac"));
+        assertFalse(wide.contains("\u6771"));
+        assertFalse(trie.contains("caf\u20ac"));
+        assertEquals(trie, wide.remove("caf\u20ac").remove("\u6771\u4eac"));
+    }
+
+    @Test
+    public void hostNamesTakeLessMemoryThanSortedTree() throws Exception {
+        final String[] services = {"api", "auth", "billing", "cache", "cdn", "db", "edge", "gateway", "ingest",
+                "search", "mail", "metrics", "queue", "web", "www", "static", "storage", "vpn", "admin", "assets"};
+        final String[] environments = {"prod", "staging", "dev"};
+        final String[] regions = {"us-east-1", "us-west-2", "eu-west-1", "ap-south-1"};
+        final Random random = new Random(7);
+        final Set<String> hosts = new LinkedHashSet<>();
+        while (hosts.size() < 20_000) {
+            hosts.add(services[random.nextInt(services.length)] + "-" + environments[random.nextInt(3)] + "-"
+                    + random.nextInt(100) + "." + regions[random.nextInt(4)] + ".example.com");
+        }
+        final long trie = GraphLayout.parseInstance(Trie.of(hosts)).totalSize();
+        final long tree = GraphLayout.parseInstance(Tree.of(new ArrayList<>(hosts))).totalSize();
+        assertTrue(trie + " bytes for the trie, " + tree + " for the tree", trie < tree);
+    }
+}